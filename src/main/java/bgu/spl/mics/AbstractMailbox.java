@@ -0,0 +1,164 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base class of the {@link Mailbox} implementations: a single lock guards the
+ * underlying storage, and one condition wakes the consumer. Subclasses only
+ * decide how messages are stored, all their hooks run while holding
+ * {@link #lock}.
+ */
+abstract class AbstractMailbox implements Mailbox {
+
+    protected final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed = false; // Guarded by lock
+
+    /**
+     * Stores {@code message}. Called while holding {@link #lock}.
+     *
+     * @param message The message to store.
+     * @return true if the message was stored, false if it was rejected.
+     */
+    protected abstract boolean insert(Message message);
+
+    /**
+     * Removes the next message. Called while holding {@link #lock}.
+     *
+     * @return The next message, or null if there is none.
+     */
+    protected abstract Message remove();
+
+    /**
+     * @return The number of stored messages. Called while holding {@link #lock}.
+     */
+    protected abstract int count();
+
+    /**
+     * Wakes the consumer if it is waiting for a message. Must be called while
+     * holding {@link #lock}, by a subclass that is about to wait inside
+     * {@link #insert(Message)} after part of a batch was already stored.
+     */
+    protected final void signalNotEmpty() {
+        notEmpty.signal();
+    }
+
+    /**
+     * Wakes the senders waiting for room, if the subclass makes them wait.
+     * Called while holding {@link #lock}, once the mailbox is closed.
+     */
+    protected void signalClosed() {
+    }
+
+    /**
+     * @return true if the mailbox was closed. Called while holding {@link #lock}.
+     */
+    protected final boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean put(Message message) {
+        lock.lock();
+        try {
+            if (closed || !insert(message)) {
+                return false;
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int putAll(Collection<? extends Message> batch) {
+        lock.lock();
+        try {
+            int accepted = 0;
+            for (Message message : batch) {
+                if (closed || !insert(message)) {
+                    break;
+                }
+                accepted++;
+            }
+            if (accepted > 0) {
+                notEmpty.signal();
+            }
+            return accepted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count() == 0) {
+                notEmpty.await();
+            }
+            return remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int takeBatch(Collection<? super Message> batch, int maxMessages) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count() == 0) {
+                notEmpty.await();
+            }
+            return moveTo(batch, maxMessages);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> batch, int maxMessages) {
+        lock.lock();
+        try {
+            return moveTo(batch, maxMessages);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int close() {
+        lock.lock();
+        try {
+            closed = true;
+            signalClosed();
+            return count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Moves up to maxMessages next messages into batch, must be called while holding the lock
+    private int moveTo(Collection<? super Message> batch, int maxMessages) {
+        int moved = 0;
+        Message message;
+        while (moved < maxMessages && (message = remove()) != null) {
+            batch.add(message);
+            moved++;
+        }
+        return moved;
+    }
+}
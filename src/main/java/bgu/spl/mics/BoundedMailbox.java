@@ -0,0 +1,154 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.locks.Condition;
+
+/**
+ * A first-in first-out {@link Mailbox} backed by a fixed size circular array,
+ * so enqueuing allocates nothing and the memory a slow consumer can hold up
+ * is capped. What happens when the mailbox is full is decided by its
+ * {@link OverflowPolicy}.
+ * <p>
+ * Only events are ever dropped or rejected. Broadcasts and tick deadlines,
+ * which a service may need to terminate, wait for room when the mailbox is full
+ * whatever the policy, so a shutdown message is never lost.
+ * <p>
+ * Note that a dropped or rejected event is never completed, so its
+ * {@link Future} is never resolved.
+ */
+public class BoundedMailbox extends AbstractMailbox {
+
+    private final Message[] messages;
+    private final OverflowPolicy policy;
+    private final Condition notFull = lock.newCondition();
+    private int head = 0; // Index of the oldest message
+    private int count = 0;
+    private volatile long dropped = 0; // Written only while holding the lock
+    private volatile long unreported = 0; // Drops not handed out by takeDroppedCount yet, written only while holding the lock
+
+    /**
+     * Constructor for BoundedMailbox.
+     *
+     * @param capacity The maximal number of waiting messages.
+     * @param policy   What to do with a new message when the mailbox is full.
+     */
+    public BoundedMailbox(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, instead received: " + capacity);
+        }
+        this.messages = new Message[capacity];
+        this.policy = policy;
+    }
+
+    @Override
+    protected boolean insert(Message message) {
+        if (count == messages.length) {
+            // Only events may be dropped or rejected, a lost broadcast or tick deadline could keep a service from terminating
+            boolean event = message instanceof Envelope;
+            if (policy == OverflowPolicy.DROP_OLDEST && removeOldestEvent()) {
+                dropped++;
+                unreported++;
+            } else if (policy == OverflowPolicy.BLOCK || !event) {
+                if (!awaitRoom()) {
+                    return false;
+                }
+            } else {
+                return false; // Rejected, or no waiting event to drop for it
+            }
+        }
+        messages[(head + count) % messages.length] = message;
+        count++;
+        return true;
+    }
+
+    // Waits until the consumer makes room, false if interrupted or closed while waiting
+    private boolean awaitRoom() {
+        // Messages of the current batch may already be waiting, let the consumer take them
+        signalNotEmpty();
+        try {
+            while (count == messages.length) {
+                if (isClosed()) {
+                    return false; // The consumer is gone and will never make room
+                }
+                notFull.await();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Preserve the status of the interrupted thread
+            return false;
+        }
+    }
+
+    // Discards the oldest waiting event, keeping the order of the other messages. False if no event is waiting
+    private boolean removeOldestEvent() {
+        for (int i = 0; i < count; i++) {
+            if (messages[(head + i) % messages.length] instanceof Envelope) {
+                // Shift the older messages one slot forward, over the dropped event
+                for (int j = i; j > 0; j--) {
+                    messages[(head + j) % messages.length] = messages[(head + j - 1) % messages.length];
+                }
+                messages[head] = null;
+                head = (head + 1) % messages.length;
+                count--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected Message remove() {
+        if (count == 0) {
+            return null;
+        }
+        Message message = messages[head];
+        messages[head] = null;
+        head = (head + 1) % messages.length;
+        count--;
+        notFull.signal();
+        return message;
+    }
+
+    @Override
+    protected int count() {
+        return count;
+    }
+
+    @Override
+    protected void signalClosed() {
+        notFull.signalAll();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    @Override
+    public long takeDroppedCount() {
+        if (unreported == 0) {
+            return 0; // The usual case, no need to lock
+        }
+        lock.lock();
+        try {
+            long count = unreported;
+            unreported = 0;
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The maximal number of waiting messages.
+     */
+    public int getCapacity() {
+        return messages.length;
+    }
+
+    /**
+     * @return What the mailbox does with a new message when it is full.
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,20 @@
+package bgu.spl.mics;
+
+/**
+ * Carries an {@link Event} through the message queue of the micro-service
+ * handling it, together with the {@link Future} to resolve once the event is
+ * completed. Since the future travels with the event, completing it needs no
+ * shared lookup table.
+ * <p>
+ * Envelopes never reach the callbacks of a micro-service, they receive the
+ * event itself.
+ */
+final class Envelope<T> implements Message {
+    final Event<T> event;
+    final Future<T> future;
+
+    Envelope(Event<T> event) {
+        this.event = event;
+        this.future = new Future<>();
+    }
+}
@@ -0,0 +1,95 @@
+package bgu.spl.mics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decides which kind of thread runs each {@link MicroService} event loop and
+ * the helper threads the services start (e.g. the ticker of the time service).
+ * Possible modes:
+ * - PLATFORM: Every thread is a regular operating system thread.
+ * - VIRTUAL: Every thread is a virtual thread, so hundreds of mostly idle
+ *   services do not hold hundreds of operating system threads.
+ *   Requires running on Java 21 or later (see the java21 profile in pom.xml),
+ *   on older versions the threads fall back to PLATFORM ones.
+ * <p>
+ * The mode of the whole system is read once from the system property
+ * {@value #PROPERTY}, and defaults to PLATFORM.
+ */
+public enum ExecutionMode {
+    PLATFORM {
+        @Override
+        public Thread newThread(Runnable task, String name) {
+            return new Thread(task, name);
+        }
+    },
+    VIRTUAL {
+        @Override
+        public Thread newThread(Runnable task, String name) {
+            ThreadFactory factory = VirtualThreadFactoryHolder.FACTORY;
+            if (factory == null) {
+                return PLATFORM.newThread(task, name);
+            }
+            Thread thread = factory.newThread(task);
+            thread.setName(name);
+            return thread;
+        }
+    };
+
+    /**
+     * The system property that selects the execution mode, e.g. {@code -Dbgu.spl.mics.execution=VIRTUAL}.
+     */
+    public static final String PROPERTY = "bgu.spl.mics.execution";
+
+    // Static inner class to hold the current mode, resolved on first use
+    private static class CurrentHolder {
+        private static final ExecutionMode CURRENT =
+                ExecutionMode.valueOf(System.getProperty(PROPERTY, PLATFORM.name()).toUpperCase());
+    }
+
+    // Static inner class to hold the virtual thread factory, resolved on first use. Null if the Java version has none
+    private static class VirtualThreadFactoryHolder {
+        private static final ThreadFactory FACTORY = resolveVirtualThreadFactory();
+    }
+
+    // The project compiles for Java 8, so the Java 21 virtual thread API is reached through reflection.
+    // Never throws, a failure in the holder's initializer would be an ExceptionInInitializerError
+    private static ThreadFactory resolveVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method create = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) create.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads require Java 21 or later, running on platform threads instead.");
+            return null;
+        }
+    }
+
+    /**
+     * @return The execution mode selected by the system property {@value #PROPERTY}.
+     */
+    public static ExecutionMode current() {
+        return CurrentHolder.CURRENT;
+    }
+
+    /**
+     * Creates a new, not yet started, thread of this mode.
+     *
+     * @param task The task the thread runs.
+     * @param name The name of the thread.
+     * @return The new thread, a platform thread if this mode is VIRTUAL and the Java version has no virtual threads.
+     */
+    public abstract Thread newThread(Runnable task, String name);
+
+    /**
+     * Starts the event loop of {@code service} on a new thread of this mode.
+     *
+     * @param service The micro-service to run.
+     * @return The started thread.
+     */
+    public Thread start(MicroService service) {
+        Thread thread = newThread(service, service.getName());
+        thread.start();
+        return thread;
+    }
+}
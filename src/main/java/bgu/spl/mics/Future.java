@@ -1,48 +1,98 @@
 package bgu.spl.mics;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
 
 /**
  * A Future object represents a promised result - an object that will
  * eventually be resolved to hold a result of some operation. The class allows
  * Retrieving the result once it is available.
- * 
+ * <p>
+ * Besides the blocking {@link #get()} methods, continuations can be attached
+ * with {@link #whenResolved(Callback)} and {@link #thenApply(Function)}, so a
+ * result can be consumed without parking a thread.
+ * A Future created by {@link #thenApply(Function)} or {@link #fromCompletionStage(CompletionStage)}
+ * fails instead of being resolved when its result could not be computed: it is done, {@code get}
+ * throws a {@link CompletionException} and the callbacks of {@link #whenResolved(Callback)} are not called.
+ * The state is kept in a single atomic reference and changed only with CAS,
+ * no lock is ever taken.
+ *
  * Only private methods may be added to this class.
  * No public constructor is allowed except for the empty constructor.
  */
 public class Future<T> {
-	private T result;
 
-	// Indicator whether the result is available
-	// Use volatile for visibility across threads without synchronization
-	private volatile boolean isDone;
+	// Either the Resolved result, or the stack (possibly null) of continuations waiting for it
+	private final AtomicReference<Object> state;
+
+	// The state of a done Future, wraps the result since the result itself may be null.
+	// A failed Future has no result, only the failure
+	private static final class Resolved<T> {
+		private final T result;
+		private final Throwable failure;
+
+		private Resolved(T result, Throwable failure) {
+			this.result = result;
+			this.failure = failure;
+		}
+	}
+
+	// A continuation registered while the Future was not done, linked to the ones registered before it.
+	// Its callback is called on resolve and its failure callback, if any, on failure.
+	// A waiter node has no callbacks and unparks its thread instead, its thread is cleared once the waiter left
+	private static final class Continuation<T> {
+		private final Callback<? super T> callback;
+		private final Callback<? super Throwable> onFailure;
+		private volatile Thread waiter;
+		private final Continuation<T> next;
+
+		private Continuation(Callback<? super T> callback, Callback<? super Throwable> onFailure, Thread waiter, Continuation<T> next) {
+			this.callback = callback;
+			this.onFailure = onFailure;
+			this.waiter = waiter;
+			this.next = next;
+		}
+
+		private boolean isAbandonedWaiter() {
+			return callback == null && waiter == null;
+		}
+	}
 
 	/**
 	 * This should be the only public constructor in this class.
 	 */
 	public Future() {
-		this.result = null;
-		this.isDone = false; // Explicitly initializing here
+		this.state = new AtomicReference<>(null);
 	}
-	
+
 	/**
      * retrieves the result the Future object holds if it has been resolved.
      * This is a blocking method! It waits for the computation in case it has
      * not been completed.
      * <p>
      * @return return the result of type T if it is available, if not wait until it is available.
-     * 	       
+     * @throws CompletionException if this Future failed, with the failure as its cause.
      */
-	// Synchronization is needed to safely check isDone state and get the result
-	public synchronized T get() {
-		while (!isDone) {
-			try {
-				wait(); // Wait until the result is resolved and notify is being called
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt(); // Preserve the status of the interrupted thread
+	public T get() {
+		if (!isDone()) {
+			Thread waiter = Thread.currentThread();
+			pushWaiter(waiter);
+			boolean interrupted = false;
+			while (!isDone()) {
+				LockSupport.park(this);
+				// Keep waiting on interrupt, but clear the flag so park does not return immediately again
+				interrupted |= Thread.interrupted();
+			}
+			if (interrupted) {
+				waiter.interrupt(); // Preserve the status of the interrupted thread
 			}
 		}
-		return result;
+		return resultIfDone();
 	}
 
 	/**
@@ -55,36 +105,226 @@ public class Future<T> {
 	 * @return return the result of type T if it is available, if not,
 	 * 	       wait for {@code timeout} TimeUnits {@code unit}. If time has
 	 *         elapsed, return null.
+	 * @throws CompletionException if this Future failed, with the failure as its cause.
 	 */
-	// Synchronization is needed to safely check isDone state and get the result
-	public synchronized T get(long timeout, TimeUnit unit) {
-		if (!isDone) {
-			try {
-				wait(unit.toMillis(timeout)); // Wait for the specified timeout
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt(); // Preserve the status of the interrupted thread
+	// Waits against an absolute deadline, so spurious wake-ups never shorten or extend the wait
+	public T get(long timeout, TimeUnit unit) {
+		if (!isDone()) {
+			final long deadline = System.nanoTime() + unit.toNanos(timeout);
+			Continuation<T> node = pushWaiter(Thread.currentThread());
+			long remaining = deadline - System.nanoTime();
+			while (!isDone() && remaining > 0) {
+				LockSupport.parkNanos(this, remaining);
+				if (Thread.currentThread().isInterrupted()) {
+					break; // Stop waiting and leave the interrupt status set for the caller
+				}
+				remaining = deadline - System.nanoTime();
+			}
+			if (node != null) {
+				// Gone, the next waiter or continuation pushed unlinks the node, so polling never grows the stack
+				node.waiter = null;
 			}
 		}
-		return result;
+		return resultIfDone();
 	}
-	
+
 	/**
      * Resolves the result of this Future object.
+     * Only the first call has an effect. The continuations registered so far
+     * are called by the resolving thread, in the order they were registered.
      */
-	// Modifies the shared state of "this" (result and isDone) and notifies waiting threads via notifyAll()
-	// Synchronization is needed for changing state safely and notifying all the threads waiting for information
-	public synchronized void resolve (T result) {
-		if (!isDone) {
-			this.result = result;
-			this.isDone = true;
-			notifyAll(); // Notify all threads waiting for the result
-		}
+	public void resolve (T result) {
+		complete(new Resolved<>(result, null));
 	}
-	
+
 	/**
-     * @return true if this object has been resolved, false otherwise
+     * @return true if this object has been resolved or failed, false otherwise
      */
 	public boolean isDone() {
-		return isDone;
+		return state.get() instanceof Resolved;
+	}
+
+	/**
+	 * Registers {@code callback} to be called with the result once this Future
+	 * is resolved. The callback is called by the resolving thread, or right away
+	 * by the calling thread if this Future is already resolved.
+	 * If the callback throws, the exception reaches the thread calling
+	 * {@link #resolve(Object)}, once all the other continuations ran.
+	 * The callback is never called if this Future fails.
+	 * This method is non-blocking.
+	 * <p>
+	 * @param callback	the callback to call with the result.
+	 */
+	public void whenResolved(Callback<? super T> callback) {
+		whenDone(callback, null);
+	}
+
+	/**
+	 * Creates a Future that is resolved with {@code fn} applied to the result
+	 * of this Future, once this Future is resolved.
+	 * This method is non-blocking.
+	 * <p>
+	 * @param <U>	the type of the result of the returned Future.
+	 * @param fn	the function applied to the result of this Future.
+	 * @return a Future holding the result of {@code fn}. It fails with the exception
+	 *         {@code fn} threw, or with the failure of this Future.
+	 */
+	public <U> Future<U> thenApply(Function<? super T, ? extends U> fn) {
+		Future<U> next = new Future<>();
+		whenDone(result -> {
+			U mapped;
+			try {
+				mapped = fn.apply(result);
+			} catch (RuntimeException e) {
+				// The failure stays with the mapped Future instead of reaching the thread that resolved this one
+				next.fail(e);
+				return;
+			}
+			next.resolve(mapped);
+		}, next::fail);
+		return next;
+	}
+
+	/**
+	 * @return a {@link CompletableFuture} that is completed with the result of
+	 *         this Future once it is resolved, or completed exceptionally with
+	 *         its failure if it fails.
+	 */
+	public CompletableFuture<T> toCompletableFuture() {
+		CompletableFuture<T> completable = new CompletableFuture<>();
+		whenDone(completable::complete, completable::completeExceptionally);
+		return completable;
+	}
+
+	/**
+	 * Creates a Future that is resolved when {@code stage} completes.
+	 * <p>
+	 * @param <T>	the type of the result.
+	 * @param stage	the stage to follow.
+	 * @return a Future resolved with the result of {@code stage}, or failed with
+	 *         its exception if {@code stage} completed exceptionally.
+	 */
+	public static <T> Future<T> fromCompletionStage(CompletionStage<T> stage) {
+		Future<T> future = new Future<>();
+		stage.whenComplete((result, failure) -> {
+			if (failure == null) {
+				future.resolve(result);
+			} else {
+				future.fail(failure);
+			}
+		});
+		return future;
+	}
+
+	// Makes this Future done with the failure instead of a result, only the first resolve or fail has an effect
+	private void fail(Throwable failure) {
+		complete(new Resolved<>(null, failure));
+	}
+
+	private void complete(Resolved<T> resolved) {
+		Object current;
+		do {
+			current = state.get();
+			if (current instanceof Resolved) {
+				return; // Already done
+			}
+		} while (!state.compareAndSet(current, resolved));
+		@SuppressWarnings("unchecked")
+		Continuation<T> continuations = (Continuation<T>) current;
+		runContinuations(continuations, resolved);
+	}
+
+	// Registers the callback of the result, and the one of the failure if not null, calling it right away if done
+	private void whenDone(Callback<? super T> callback, Callback<? super Throwable> onFailure) {
+		Object current;
+		do {
+			current = state.get();
+			if (current instanceof Resolved) {
+				@SuppressWarnings("unchecked")
+				Resolved<T> resolved = (Resolved<T>) current;
+				if (resolved.failure == null) {
+					callback.call(resolved.result);
+				} else if (onFailure != null) {
+					onFailure.call(resolved.failure);
+				}
+				return;
+			}
+			if (state.compareAndSet(current, new Continuation<>(callback, onFailure, null, liveTop(current)))) {
+				return;
+			}
+		} while (true);
+	}
+
+	// The result if this Future was resolved, null otherwise
+	private T resultIfDone() {
+		Object current = state.get();
+		if (current instanceof Resolved) {
+			@SuppressWarnings("unchecked")
+			Resolved<T> resolved = (Resolved<T>) current;
+			if (resolved.failure != null) {
+				throw resolved.failure instanceof CompletionException
+						? (CompletionException) resolved.failure
+						: new CompletionException(resolved.failure);
+			}
+			return resolved.result;
+		}
+		return null;
+	}
+
+	// Pushes a node that unparks waiter on resolve, null if this Future is already resolved
+	private Continuation<T> pushWaiter(Thread waiter) {
+		do {
+			Object current = state.get();
+			if (current instanceof Resolved) {
+				return null;
+			}
+			Continuation<T> node = new Continuation<>(null, null, waiter, liveTop(current));
+			if (state.compareAndSet(current, node)) {
+				return node;
+			}
+		} while (true);
+	}
+
+	// The stack of continuations without the waiters that left from its top
+	private static <T> Continuation<T> liveTop(Object current) {
+		@SuppressWarnings("unchecked")
+		Continuation<T> top = (Continuation<T>) current;
+		while (top != null && top.isAbandonedWaiter()) {
+			top = top.next;
+		}
+		return top;
+	}
+
+	// Calls the continuations oldest first, all of them are called even if one throws
+	private static <T> void runContinuations(Continuation<T> newest, Resolved<T> resolved) {
+		Continuation<T> oldest = null;
+		// The stack holds the newest continuation first, reverse it to keep the registration order
+		for (Continuation<T> c = newest; c != null; c = c.next) {
+			oldest = new Continuation<>(c.callback, c.onFailure, c.waiter, oldest);
+		}
+		RuntimeException failure = null;
+		for (Continuation<T> c = oldest; c != null; c = c.next) {
+			if (c.callback == null) {
+				Thread waiter = c.waiter;
+				if (waiter != null) {
+					LockSupport.unpark(waiter);
+				}
+				continue;
+			}
+			try {
+				if (resolved.failure == null) {
+					c.callback.call(resolved.result);
+				} else if (c.onFailure != null) {
+					c.onFailure.call(resolved.failure);
+				}
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
 	}
 }
@@ -0,0 +1,35 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link RoutingPolicy} that sends every event to the subscribed
+ * micro-service with the fewest waiting messages, so a slow handler is not
+ * given more work while faster ones are idle. Ties are broken in turn, so
+ * idle micro-services share the load round-robin.
+ * <p>
+ * Looks at the queue of every candidate, see {@link PowerOfTwoChoicesRouting}
+ * for a cheaper approximation when there are many candidates.
+ */
+public class LeastQueueDepthRouting implements RoutingPolicy<Event<?>> {
+
+    private final AtomicInteger start = new AtomicInteger(); // The candidate the next scan starts at
+
+    @Override
+    public MicroService select(Event<?> event, MicroService[] candidates, ToIntFunction<MicroService> backlog) {
+        // The scan keeps the first of the tied candidates, starting each scan one further spreads the ties
+        int first = Math.floorMod(start.getAndIncrement(), candidates.length);
+        MicroService best = candidates[first];
+        int bestBacklog = backlog.applyAsInt(best);
+        for (int i = 1; i < candidates.length && bestBacklog > 0; i++) {
+            MicroService candidate = candidates[(first + i) % candidates.length];
+            int candidateBacklog = backlog.applyAsInt(candidate);
+            if (candidateBacklog < bestBacklog) {
+                best = candidate;
+                bestBacklog = candidateBacklog;
+            }
+        }
+        return best;
+    }
+}
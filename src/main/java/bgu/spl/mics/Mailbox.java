@@ -0,0 +1,95 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+
+/**
+ * The message queue the {@link MessageBusImpl} allocates for every registered
+ * {@link MicroService}. Many threads may put messages into a mailbox, but only
+ * the micro-service owning it takes them out.
+ * <p>
+ * A micro-service picks its mailbox implementation with
+ * {@link MicroService#setMailbox(java.util.function.Supplier)}, the default is
+ * an {@link UnboundedMailbox}.
+ */
+public interface Mailbox {
+
+    /**
+     * Appends {@code message} and wakes the consumer if it is waiting.
+     * <p>
+     * @param message The message to append.
+     * @return true if the message was accepted, false if the mailbox rejected it.
+     */
+    boolean put(Message message);
+
+    /**
+     * Appends the messages of {@code batch} in order, waking the consumer
+     * at most once.
+     * <p>
+     * @param batch The messages to append.
+     * @return The number of messages accepted. The accepted messages are
+     *         always the first ones of {@code batch}.
+     */
+    int putAll(Collection<? extends Message> batch);
+
+    /**
+     * Removes the next message, waiting until one is available.
+     * <p>
+     * @return The next message.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Message take() throws InterruptedException;
+
+    /**
+     * Waits until at least one message is available, then moves up to
+     * {@code maxMessages} next messages into {@code batch} in one operation.
+     * <p>
+     * @param batch       The collection to move the messages into.
+     * @param maxMessages The maximal number of messages to move, at least 1.
+     * @return The number of messages moved.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    int takeBatch(Collection<? super Message> batch, int maxMessages) throws InterruptedException;
+
+    /**
+     * Moves up to {@code maxMessages} next messages into {@code batch} without
+     * waiting, in one operation.
+     * <p>
+     * @param batch       The collection to move the messages into.
+     * @param maxMessages The maximal number of messages to move.
+     * @return The number of messages moved, 0 if the mailbox is empty.
+     */
+    int drainTo(Collection<? super Message> batch, int maxMessages);
+
+    /**
+     * @return The number of messages currently waiting.
+     */
+    int size();
+
+    /**
+     * Closes the mailbox: every message put from now on is rejected, and the
+     * senders waiting for room give up and have their message rejected too.
+     * The messages already waiting can still be taken.
+     * <p>
+     * @return The number of messages waiting when the mailbox was closed.
+     */
+    int close();
+
+    /**
+     * @return The number of accepted messages the mailbox later discarded
+     *         without handing them to the consumer, since it was created.
+     */
+    default long getDroppedCount() {
+        return 0;
+    }
+
+    /**
+     * Hands out the drops that were not handed out yet, so every dropped
+     * message is reported exactly once however many threads ask.
+     * <p>
+     * @return The number of accepted messages the mailbox discarded since
+     *         the previous call.
+     */
+    default long takeDroppedCount() {
+        return 0;
+    }
+}
@@ -56,7 +56,8 @@ public interface MessageBus {
      * @param <T>    	The type of the result expected by the event and its corresponding future object.
      * @param e     	The event to add to the queue.
      * @return {@link Future<T>} object to be resolved once the processing is complete,
-     * 	       null in case no micro-service has subscribed to {@code e.getClass()}.
+     * 	       null in case no micro-service has subscribed to {@code e.getClass()},
+     * 	       or the {@link Mailbox} of the chosen micro-service rejected {@code e}.
      */
     <T> Future<T> sendEvent(Event<T> e);
 
@@ -1,27 +1,53 @@
 package bgu.spl.mics;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 
 /**
  * The {@link MessageBusImpl class is the implementation of the MessageBus interface.
  * Write your implementation here!
  * Only one public method (in addition to getters which can be public solely for unit testing) may be added to this class
  * All other methods and members you add the class must be private.
+ * <p>
+ * {@link #setRoutingPolicy(Class, RoutingPolicy)} is the one public method added. The other non-private
+ * methods are package-private, for {@link MicroService}, {@link TickScheduler} and the tests of this package:
+ * batch publishing, the mailbox lookup of the event loop, direct delivery of tick deadlines, and the count
+ * of messages in flight. They need the state of the bus, which private methods cannot share with other
+ * classes, and the {@link MessageBus} interface cannot gain methods.
  */
 public class MessageBusImpl implements MessageBus {
 
-	private final Map<MicroService, BlockingQueue<Message>> serviceQueues;
-	private final Map<Class<? extends Message>, List<MicroService>> subscribers;
-	private final Map<Event<?>, Future<?>> eventFutures;
-	// Tracks the current index of the handling microservice for each event type
-	private final Map<Class<? extends Event<?>>, Integer> roundRobinIndices;
+	private final Map<MicroService, Mailbox> serviceQueues;
+	// Per-type rings of subscribers with their round-robin cursors, see SubscriberRegistry
+	private final SubscriberRegistry subscribers;
+	// Event types that are not distributed round-robin, with the policy that routes them
+	private final Map<Class<?>, RoutingPolicy<?>> routingPolicies;
+	// Number of messages waiting for a microservice, as seen by the routing policies
+	private final ToIntFunction<MicroService> backlog;
+	// Whether messages in flight are counted, only once a microservice waits for quiescence.
+	// Until then sending and handling messages pay nothing for it
+	private volatile boolean countingInFlight;
+	// Messages accepted by a mailbox and not handled yet, counted up before they become visible to the consumer
+	private final AtomicLong inFlight;
+	// Wakes the threads waiting for quiescence
+	private final Object quiescence;
+	// The envelopes of the events handed out by awaitMessage and not completed yet, by event identity,
+	// so complete can resolve their Future from any thread. The event loop of a microservice never goes through it
+	private final Map<Event<?>, Envelope<?>> taken;
 
 	// Private constructor to prevent instantiation of singleton
 	private MessageBusImpl() {
 		serviceQueues = new ConcurrentHashMap<>();
-		subscribers = new ConcurrentHashMap<>();
-		eventFutures = new ConcurrentHashMap<>();
-		roundRobinIndices = new ConcurrentHashMap<>();
+		subscribers = new SubscriberRegistry();
+		routingPolicies = new ConcurrentHashMap<>();
+		backlog = m -> {
+			Mailbox queue = serviceQueues.get(m);
+			return queue == null ? Integer.MAX_VALUE : queue.size();
+		};
+		inFlight = new AtomicLong();
+		quiescence = new Object();
+		taken = Collections.synchronizedMap(new IdentityHashMap<>());
 	}
 
 	// Static inner class to hold the singleton instance (as detailed in PS9)
@@ -36,91 +62,294 @@ public class MessageBusImpl implements MessageBus {
 
 	@Override
 	// Register a microservice to the MessageBus by creating a dedicated queue for if it doesn't exist already
-	// Synchronized to ensure only one thread can update serviceQueues, to prevent inconsistent or duplicate entries
-	public synchronized void register(MicroService m) {
-		serviceQueues.putIfAbsent(m, new LinkedBlockingQueue<>());
+	// The mailbox implementation is the one the microservice asked for
+	// computeIfAbsent is atomic on the ConcurrentHashMap, so no global lock is needed
+	public void register(MicroService m) {
+		serviceQueues.computeIfAbsent(m, MicroService::createMailbox);
 	}
 
 	@Override
-	// Synchronized to ensure that the un-registration process is atomic, to prevent partial removals
-	public synchronized void unregister(MicroService m) {
-		serviceQueues.remove(m);
-		subscribers.values().forEach(list -> list.remove(m)); // TODO: ?
+	// Removing the queue first makes new senders skip m, then m leaves only the rings it subscribed to.
+	// A sender may still hold the queue it looked up before: closing the queue rejects its message, or wakes it
+	// if it waits for room, so once closed no message can join the ones left in the queue.
+	// Those will never be handled, so they no longer count as in flight
+	public void unregister(MicroService m) {
+		Mailbox queue = serviceQueues.remove(m);
+		if (queue == null) {
+			return;
+		}
+		int left = queue.close();
+		handled(left + queue.takeDroppedCount());
+		subscribers.unsubscribeAll(m);
 	}
 
 	@Override
-	// Synchronized to ensure subscribers map and its associated lists are updated consistently
-	public synchronized  <T> void subscribeEvent(Class<? extends Event<T>> type, MicroService m) {
-		// In case this event type doesn't have subscribers yet, initialize it
-		subscribers.putIfAbsent(type, new ArrayList<>());
-		// Get the list of subscribers to this event type and add the new microservice to it
-		subscribers.get(type).add(m);
+	// The registry only locks the ring of this event type, so subscriptions to other types are not blocked
+	public <T> void subscribeEvent(Class<? extends Event<T>> type, MicroService m) {
+		subscribers.subscribe(type, m);
 	}
 
 	@Override
-	public synchronized void subscribeBroadcast(Class<? extends Broadcast> type, MicroService m) {
+	public void subscribeBroadcast(Class<? extends Broadcast> type, MicroService m) {
 		// Same as subscribeEvent, this time the argument is extending broadcast
-		subscribers.putIfAbsent(type, new ArrayList<>());
-		subscribers.get(type).add(m);
+		subscribers.subscribe(type, m);
 	}
 
 	@Override
-	// Synchronized to ensure atomicity in selecting the target MicroService, updating indices, and queuing the event
-	public synchronized <T> Future<T> sendEvent(Event<T> e) {
-		// Get the list of MicroServices subscribed to the type of event e. If none then it's an empty list
-		List<MicroService> eventSubscribers = subscribers.getOrDefault(e.getClass(), new ArrayList<>());
+	// Lock-free: the ring of the event type hands out its next handler with a single atomic increment
+	public <T> Future<T> sendEvent(Event<T> e) {
+		Mailbox queue = selectMailbox(e);
 		// If no subscribers then there are no handlers available to resolve this event
-		if (eventSubscribers.isEmpty()) {
+		if (queue == null) {
 			return null;
 		}
 
-		// Round-robin pattern to evenly distribute events among MicroServices subscribed to a specific event type:
-		// Fetch the current index for this event type. If no index exists, start with 0
-		int index = roundRobinIndices.getOrDefault(e.getClass(), 0);
-		// Retrieve the subscribed microservice at the current index and then increment index
-		MicroService target = eventSubscribers.get(index);
-		roundRobinIndices.put((Class<? extends Event<?>>) e.getClass(), (index + 1) % eventSubscribers.size());
-
-		// Create a new Future object for the result of the processed event and put in the map
-		Future<T> future = new Future<>();
-		eventFutures.put(e, future);
+		// The Future of the event travels with it in an envelope, so completing it needs no shared map
+		Envelope<T> envelope = new Envelope<>(e);
 		// Enqueues the event for the MicroService so it can process it when it reaches this message
-		serviceQueues.get(target).add(e);
-		return future;
+		if (!put(queue, envelope)) {
+			// The mailbox of the chosen microservice is full and rejected the event
+			return null;
+		}
+		return envelope.future;
 	}
 
 	@Override
-	// Synchronized to ensure subscribers map is not modified while the method is iterating on it
-	public synchronized void sendBroadcast(Broadcast b) {
-		// Get the subscribers to this specific event. If none then it's an empty list
-		List<MicroService> broadcastSubscribers = subscribers.getOrDefault(b.getClass(), new ArrayList<>());
+	// The snapshot array is never modified after publication, so iterating it needs no lock
+	public void sendBroadcast(Broadcast b) {
+		MicroService[] broadcastSubscribers = subscribers.handlersOf(b.getClass());
 		// Add the broadcast to the queue of each subscribed microservice
 		for (MicroService m : broadcastSubscribers) {
-			serviceQueues.get(m).add(b);
+			Mailbox queue = serviceQueues.get(m);
+			if (queue != null) {
+				put(queue, b);
+			}
 		}
 	}
 
+	/**
+	 * Sends every event of {@code events} as if by {@link #sendEvent(Event)},
+	 * but enqueues them with a single operation and a single wake-up per
+	 * receiving micro-service.
+	 * <p>
+	 * @param <T>    	The type of the result expected by the events and their corresponding future objects.
+	 * @param events 	The events to add to the queues.
+	 * @return A list holding the {@link Future<T>} of each event, in the order of {@code events}.
+	 *         An entry is null in case no micro-service has subscribed to the class of that event,
+	 *         or the {@link Mailbox} of the chosen micro-service rejected it.
+	 */
+	// Picks the targets of all the events first, then hands every target mailbox its share in one putAll
+	<T> List<Future<T>> sendEvents(Collection<? extends Event<T>> events) {
+		List<Future<T>> futures = new ArrayList<>(events.size());
+		Map<Mailbox, List<Message>> batches = new IdentityHashMap<>();
+		for (Event<T> e : events) {
+			Mailbox queue = selectMailbox(e);
+			if (queue == null) {
+				futures.add(null);
+				continue;
+			}
+			Envelope<T> envelope = new Envelope<>(e);
+			futures.add(envelope.future);
+			batches.computeIfAbsent(queue, q -> new ArrayList<>()).add(envelope);
+		}
+		batches.forEach((queue, batch) -> {
+			int accepted = putAll(queue, batch);
+			// A full mailbox rejects the tail of its batch, those events get a null future like in sendEvent
+			for (Message rejected : batch.subList(accepted, batch.size())) {
+				Future<?> future = ((Envelope<?>) rejected).future;
+				futures.replaceAll(f -> f == future ? null : f);
+			}
+		});
+		return futures;
+	}
+
+	/**
+	 * Sends every broadcast of {@code broadcasts} as if by {@link #sendBroadcast(Broadcast)},
+	 * but enqueues them with a single operation and a single wake-up per
+	 * receiving micro-service.
+	 * <p>
+	 * @param broadcasts 	The messages to add to the queues, in order.
+	 */
+	// Groups the broadcasts per subscriber mailbox so every subscriber is woken up once for the whole batch
+	void sendBroadcasts(Collection<? extends Broadcast> broadcasts) {
+		Map<Mailbox, List<Message>> batches = new IdentityHashMap<>();
+		for (Broadcast b : broadcasts) {
+			for (MicroService m : subscribers.handlersOf(b.getClass())) {
+				Mailbox queue = serviceQueues.get(m);
+				if (queue != null) {
+					batches.computeIfAbsent(queue, q -> new ArrayList<>()).add(b);
+				}
+			}
+		}
+		batches.forEach(this::putAll);
+	}
+
 	@Override
-	// Synchronized to ensure only one thread at a time can resolve a specific future
-	public synchronized <T> void complete(Event<T> e, T result) {
-		// Get a future object of the wanted event type
-		Future<T> future = (Future<T>) eventFutures.get(e);
-		if (future != null) {
-			// Resolve the future object with the given result
-			future.resolve(result);
-			eventFutures.remove(e);
+	// A microservice completing the event it is handling resolves the future of the envelope directly.
+	// This method resolves the events handed out by awaitMessage, an event handled by the event loop of a
+	// microservice and completed after its callback must have its Future taken with MicroService.deferCompletion
+	public <T> void complete(Event<T> e, T result) {
+		Envelope<?> envelope = taken.remove(e);
+		if (envelope == null) {
+			throw new IllegalStateException("The event was not taken with awaitMessage, or was already completed.");
 		}
+		@SuppressWarnings("unchecked")
+		Future<T> future = (Future<T>) envelope.future;
+		future.resolve(result);
 	}
 
 	@Override
-	// No need to synchronize because LinkedBlockingQueue is thread safe and take will block if needed
-	// each MicroService has its own BlockingQueue, ensuring isolated and thread-safe access to its messages
+	// No need to synchronize because the Mailbox is thread safe and take will block if needed
+	// each MicroService has its own Mailbox, ensuring isolated and thread-safe access to its messages
 	public Message awaitMessage(MicroService m) throws InterruptedException {
 		// Fetch the message queue of the given MicroService from the serviceQueues map and validate not null
-		BlockingQueue<Message> queue = serviceQueues.get(m);
+		Mailbox queue = serviceQueues.get(m);
 		if (queue == null) {
 			throw new IllegalStateException("MicroService is not registered.");
 		}
-		return queue.take(); // blocks the calling thread until a message is available
+		// blocks the calling thread until a message is available, then hands an event out of its envelope
+		// The bus cannot tell when the caller is done with the message, it counts as handled once taken
+		Message message = queue.take();
+		handled(1);
+		return unwrap(message);
+	}
+
+	// Hands out the event of an envelope, keeping the envelope so any thread can complete the event
+	private Message unwrap(Message message) {
+		if (message instanceof Envelope) {
+			Envelope<?> envelope = (Envelope<?>) message;
+			taken.put(envelope.event, envelope);
+			return envelope.event;
+		}
+		return message;
+	}
+
+	// The mailbox of a registered microservice, its own event loop takes the envelopes from it as they are
+	Mailbox mailboxOf(MicroService m) {
+		Mailbox queue = serviceQueues.get(m);
+		if (queue == null) {
+			throw new IllegalStateException("MicroService is not registered.");
+		}
+		return queue;
+	}
+
+	// Puts a message straight into the mailbox of m, false if m is not registered or its mailbox rejected it
+	boolean deliver(MicroService m, Message message) {
+		Mailbox queue = serviceQueues.get(m);
+		return queue != null && put(queue, message);
+	}
+
+	/**
+	 * Waits until the system is quiescent: every message sent so far was handled,
+	 * and the callbacks that handled them finished, including the messages those
+	 * callbacks sent in turn. Messages taken with {@link #awaitMessage(MicroService)}
+	 * count as handled once taken.
+	 * <p>
+	 * A time source can call this between ticks to emit the next tick as soon as
+	 * the previous one was fully processed.
+	 * <p>
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws IllegalStateException if the messages in flight are not counted, see {@link #countInFlight()}.
+	 */
+	void awaitQuiescence() throws InterruptedException {
+		if (!countingInFlight) {
+			throw new IllegalStateException("Messages in flight are not counted, call countInFlight() before sending any.");
+		}
+		synchronized (quiescence) {
+			while (inFlight.get() > 0) {
+				// Woken by the decrement that brings the count to zero
+				quiescence.wait();
+			}
+		}
+	}
+
+	// Starts counting the messages in flight for awaitQuiescence. Messages sent before are never counted,
+	// so it must be called before any message is sent. Once on, counting stays on until stopCountingInFlight
+	void countInFlight() {
+		countingInFlight = true;
+	}
+
+	// Stops counting the messages in flight and forgets the count, so a test can leave the bus as it found it
+	void stopCountingInFlight() {
+		countingInFlight = false;
+		inFlight.set(0);
+	}
+
+	// Called by a microservice once the callback of a message it took returned, or for messages it will never handle
+	void handled(long count) {
+		if (countingInFlight && count != 0 && inFlight.addAndGet(-count) == 0) {
+			synchronized (quiescence) {
+				quiescence.notifyAll();
+			}
+		}
+	}
+
+	// Counts the message as in flight before the consumer can see it, so the count never reaches zero too early.
+	// An event a full mailbox dropped to make room for it will never be handled, it no longer counts either
+	private boolean put(Mailbox queue, Message message) {
+		if (!countingInFlight) {
+			return queue.put(message);
+		}
+		inFlight.incrementAndGet();
+		boolean accepted = queue.put(message);
+		handled((accepted ? 0 : 1) + queue.takeDroppedCount());
+		return accepted;
+	}
+
+	private int putAll(Mailbox queue, List<Message> batch) {
+		if (!countingInFlight) {
+			return queue.putAll(batch);
+		}
+		inFlight.addAndGet(batch.size());
+		int accepted = queue.putAll(batch);
+		handled(batch.size() - accepted + queue.takeDroppedCount());
+		return accepted;
+	}
+
+	/**
+	 * Sets the policy that picks which subscriber receives each event of type {@code type}.
+	 * <p>
+	 * @param <E>    The type of the events the policy routes.
+	 * @param type   The event type to route, {@code E} or a subtype of it.
+	 * @param policy The policy to use, or null to go back to round-robin.
+	 * @throws IllegalArgumentException if {@code type} is not an event type.
+	 */
+	public <E> void setRoutingPolicy(Class<? extends E> type, RoutingPolicy<E> policy) {
+		if (!Event.class.isAssignableFrom(type)) {
+			throw new IllegalArgumentException("Only events are routed, instead received: " + type.getName());
+		}
+		if (policy == null) {
+			routingPolicies.remove(type);
+		} else {
+			routingPolicies.put(type, policy);
+		}
+	}
+
+	// Selection of the mailbox that should receive e, null if no registered service subscribed to it.
+	// Uses the routing policy of the event type if there is one, round-robin otherwise
+	private Mailbox selectMailbox(Event<?> e) {
+		SubscriberRegistry.Ring ring = subscribers.ringOf(e.getClass());
+		if (ring == null) {
+			return null;
+		}
+		// The policy was set for exactly this class, a subtype of the events the policy routes
+		@SuppressWarnings("unchecked")
+		RoutingPolicy<Object> policy = (RoutingPolicy<Object>) routingPolicies.get(e.getClass());
+		MicroService[] candidates = ring.handlers();
+		if (policy != null && candidates.length > 0) {
+			Mailbox queue = serviceQueues.get(policy.select(e, candidates, backlog));
+			if (queue != null) {
+				return queue;
+			}
+		}
+		// A subscriber may have unregistered meanwhile, in that case move on to the next one
+		for (int attempt = ring.handlers().length; attempt > 0; attempt--) {
+			MicroService target = ring.next();
+			Mailbox queue = target == null ? null : serviceQueues.get(target);
+			if (queue != null) {
+				return queue;
+			}
+		}
+		return null;
 	}
 }
@@ -1,7 +1,11 @@
 package bgu.spl.mics;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * The MicroService is an abstract class that any microservice in the system
@@ -20,14 +24,35 @@ import java.util.Map;
  *
  * Only private fields and methods may be added to this class.
  * <p>
+ * The methods added beyond private ones are the following. Derived classes must never touch the
+ * message-bus, so they get protected wrappers for batch sending, deferred completion, tick
+ * scheduling and quiescence, and protected setters for their mailbox and batch size.
+ * {@link #getAverageBatchSize()} is a public getter. The package-private methods let the
+ * {@link MessageBusImpl} create the mailbox, and let a {@link ServiceScheduler} drive the
+ * microservice in place of {@link #run()}.
  */
 public abstract class MicroService implements Runnable {
 
-    private boolean terminated = false; // Indicator whether the microservice should stop its message loop
+    // Indicator whether the microservice should stop its message loop. Volatile, since under a
+    // ServiceScheduler the turn that terminates and the check that ends the service may run on different workers
+    private volatile boolean terminated = false;
     private final String name;
-    private final MessageBus messageBus = MessageBusImpl.getInstance();
+    private final MessageBusImpl messageBus = MessageBusImpl.getInstance();
     // Stores callbacks associated with each message type
     private final Map<Class<? extends Message>, Callback<?>> callbacks = new HashMap<>();
+    // Creates the message queue the message-bus allocates for this microservice when it registers
+    private Supplier<? extends Mailbox> mailboxFactory = UnboundedMailbox::new;
+    // Maximal number of messages taken from the queue at once, 1 means one message per awaitMessage
+    private int batchSize = 1;
+    // Counters for the average batch size, written only by the thread running the event loop
+    private volatile long batchesTaken = 0;
+    private volatile long messagesTaken = 0;
+    // The event whose callback is running, with its Future, so completing it resolves the Future directly
+    private Envelope<?> handling = null;
+    // Callbacks scheduled with scheduleAtTick, by tick. Used only by the thread running the event loop
+    private final Map<Integer, List<Callback<Integer>>> tickCallbacks = new HashMap<>();
+    // Set when the microservice is run by a ServiceScheduler instead of its own event loop
+    private ServiceScheduler.Slot schedulerSlot = null;
 
     /**
      * @param name the microservice name (used mainly for debugging purposes -
@@ -114,6 +139,29 @@ public abstract class MicroService implements Runnable {
         messageBus.sendBroadcast(b);
     }
 
+    /**
+     * Sends all the events of {@code events} using the message-bus in one batch,
+     * so each receiving microservice is woken up once for the whole batch.
+     * This method is Non-Blocking like {@link #sendEvent(Event)}.
+     * <p>
+     * @param <T>       The type of the expected result of the events
+     * @param events    The events to send
+     * @return          The {@link Future<T>} of each event, in the order of {@code events}.
+     *                  An entry is null in case no microservice has subscribed to the class of that event.
+     */
+    protected final <T> List<Future<T>> sendEvents(Collection<? extends Event<T>> events) {
+        return messageBus.sendEvents(events);
+    }
+
+    /**
+     * Sends all the broadcast messages of {@code broadcasts} using the message-bus in one batch.
+     * <p>
+     * @param broadcasts The broadcast messages to send, in order
+     */
+    protected final void sendBroadcasts(Collection<? extends Broadcast> broadcasts) {
+        messageBus.sendBroadcasts(broadcasts);
+    }
+
     /**
      * Completes the received request {@code e} with the result {@code result}
      * using the message-bus.
@@ -123,9 +171,80 @@ public abstract class MicroService implements Runnable {
      * @param e      The event to complete.
      * @param result The result to resolve the relevant Future object.
      *               {@code e}.
+     * @throws IllegalStateException if {@code e} is not the event whose callback is running,
+     *                               and was not taken with {@link MessageBus#awaitMessage(MicroService)} either.
      */
     protected final <T> void complete(Event<T> e, T result) {
-        messageBus.complete(e, result);
+        Future<T> future = takeHandled(e);
+        if (future != null) {
+            // The common case: completing the event being handled, its Future came along in the envelope
+            future.resolve(result);
+        } else {
+            messageBus.complete(e, result);
+        }
+    }
+
+    /**
+     * Takes over the completion of the event {@code e} whose callback is
+     * running, for a callback that can only complete it later, e.g. once a
+     * result due at a later tick is ready. The event is then completed by
+     * resolving the returned {@link Future}, not by {@link #complete(Event, Object)}.
+     * An event that is neither completed nor deferred by its callback is never completed.
+     * <p>
+     * @param <T> The type of the expected result of the event.
+     * @param e   The event whose callback is running.
+     * @return The {@link Future} of {@code e}, to resolve with its result.
+     * @throws IllegalStateException if {@code e} is not the event whose callback is running.
+     */
+    protected final <T> Future<T> deferCompletion(Event<T> e) {
+        Future<T> future = takeHandled(e);
+        if (future == null) {
+            throw new IllegalStateException("Only the event whose callback is running can be deferred");
+        }
+        return future;
+    }
+
+    /**
+     * Schedules {@code callback} to be called with the tick once the system
+     * reaches {@code tick}, see {@link TickScheduler}. Unlike subscribing to a
+     * tick broadcast, the microservice is woken up only at the ticks it scheduled.
+     * If {@code tick} was already reached, the callback is called as soon as possible.
+     * Must be called by the microservice itself, e.g. in {@link #initialize()} or in a callback.
+     * <p>
+     * @param tick     The tick to call the callback at.
+     * @param callback The callback to call with the tick.
+     */
+    protected final void scheduleAtTick(int tick, Callback<Integer> callback) {
+        List<Callback<Integer>> scheduled = tickCallbacks.get(tick);
+        if (scheduled == null) {
+            scheduled = new ArrayList<>();
+            tickCallbacks.put(tick, scheduled);
+            // One wake-up per tick, however many callbacks are scheduled for it
+            TickScheduler.getInstance().schedule(this, tick);
+        }
+        scheduled.add(callback);
+    }
+
+    /**
+     * Makes the message-bus count the messages in flight, which {@link #awaitQuiescence()} waits on.
+     * Counting is off until a microservice asks for it, so the other modes do not pay for it.
+     * Must be called before any message is sent, e.g. in the constructor of the microservice
+     * that will wait for quiescence.
+     */
+    protected final void countMessagesInFlight() {
+        messageBus.countInFlight();
+    }
+
+    /**
+     * Waits until every message sent so far was handled by its receivers, including
+     * the messages sent by their callbacks in turn, see {@link MessageBusImpl#awaitQuiescence()}.
+     * Must not be called by a callback of a microservice, which would wait for itself.
+     * <p>
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if {@link #countMessagesInFlight()} was never called.
+     */
+    protected final void awaitQuiescence() throws InterruptedException {
+        messageBus.awaitQuiescence();
     }
 
     /**
@@ -141,6 +260,44 @@ public abstract class MicroService implements Runnable {
         this.terminated = true;
     }
 
+    /**
+     * Makes the event loop take up to {@code batchSize} already-queued messages
+     * at once instead of a single message per wait, and call their callbacks
+     * one after the other. Should be called before the event loop starts,
+     * e.g. in the constructor of the derived class.
+     * <p>
+     * @param batchSize The maximal number of messages taken at once, at least 1.
+     */
+    protected final void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, instead received: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Chooses the kind of message queue the message-bus allocates for this
+     * microservice, e.g. a {@link BoundedMailbox} to cap the memory a slow
+     * microservice can hold up, or a {@link PriorityMailbox} to let shutdown
+     * broadcasts skip ahead of queued data. Must be called before the event
+     * loop starts, e.g. in the constructor of the derived class.
+     * By default an {@link UnboundedMailbox} is used.
+     * <p>
+     * @param mailboxFactory Creates the mailbox of this microservice.
+     */
+    protected final void setMailbox(Supplier<? extends Mailbox> mailboxFactory) {
+        this.mailboxFactory = mailboxFactory;
+    }
+
+    /**
+     * @return the average number of messages the event loop took from the
+     *         message queue at once so far, 0 if it did not take any yet.
+     */
+    public final double getAverageBatchSize() {
+        long batches = batchesTaken;
+        return batches == 0 ? 0 : (double) messagesTaken / batches;
+    }
+
     /**
      * @return the name of the service - the service name is given to it in the
      *         construction time and is used mainly for debugging purposes.
@@ -158,13 +315,19 @@ public abstract class MicroService implements Runnable {
         messageBus.register(this);
         initialize();
         try {
-            while (!terminated) {
-                Message message = messageBus.awaitMessage(this);
-                @SuppressWarnings("unchecked")
-                        // Call the appropriate callback for each received message
-                Callback<Message> callback = (Callback<Message>) callbacks.get(message.getClass());
-                if (callback != null) {
-                    callback.call(message);
+            // The loop takes the messages straight from the mailbox, so events still carry their Future
+            Mailbox mailbox = messageBus.mailboxOf(this);
+            if (batchSize == 1) {
+                while (!terminated) {
+                    dispatch(mailbox.take());
+                    recordBatch(1);
+                }
+            } else {
+                List<Message> batch = new ArrayList<>(batchSize);
+                while (!terminated) {
+                    mailbox.takeBatch(batch, batchSize);
+                    dispatchAll(batch);
+                    batch.clear();
                 }
             }
         } catch (InterruptedException e) {
@@ -173,4 +336,105 @@ public abstract class MicroService implements Runnable {
             messageBus.unregister(this);
         }
     }
+
+    // Call the appropriate callback for the received message, then tell the message-bus it was handled
+    private void dispatch(Message message) {
+        try {
+            handle(message);
+        } finally {
+            messageBus.handled(1);
+        }
+    }
+
+    private void handle(Message message) {
+        if (message instanceof TickDeadline) {
+            callScheduled(((TickDeadline) message).tick);
+            return;
+        }
+        if (!(message instanceof Envelope)) {
+            call(message);
+            return;
+        }
+        Envelope<?> envelope = (Envelope<?>) message;
+        handling = envelope;
+        try {
+            call(envelope.event);
+        } finally {
+            // Completed, deferred, or left uncompleted by the callback: the envelope is done either way
+            handling = null;
+        }
+    }
+
+    // The Future of e if it is the event being handled, which is then no longer available to complete
+    private <T> Future<T> takeHandled(Event<T> e) {
+        if (handling == null || handling.event != e) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Future<T> future = (Future<T>) handling.future;
+        handling = null;
+        return future;
+    }
+
+    private void call(Message message) {
+        @SuppressWarnings("unchecked")
+        Callback<Message> callback = (Callback<Message>) callbacks.get(message.getClass());
+        if (callback != null) {
+            callback.call(message);
+        }
+    }
+
+    // Calls the callbacks scheduled for tick, in the order they were scheduled
+    private void callScheduled(int tick) {
+        List<Callback<Integer>> scheduled = tickCallbacks.remove(tick);
+        if (scheduled != null) {
+            for (Callback<Integer> callback : scheduled) {
+                callback.call(tick);
+            }
+        }
+    }
+
+    // Used by the message-bus to allocate the message queue of this microservice
+    Mailbox createMailbox() {
+        Mailbox mailbox = mailboxFactory.get();
+        return schedulerSlot == null ? mailbox : schedulerSlot.wrap(mailbox);
+    }
+
+    // The methods below let a ServiceScheduler drive this microservice in place of run()
+
+    void attachScheduler(ServiceScheduler.Slot slot) {
+        this.schedulerSlot = slot;
+    }
+
+    void initializeScheduled() {
+        messageBus.register(this);
+        initialize();
+    }
+
+    // Calls the callbacks of a batch taken from the queue, stopping if one of them terminated the microservice
+    void dispatchAll(List<Message> batch) {
+        recordBatch(batch.size());
+        int dispatched = 0;
+        try {
+            while (dispatched < batch.size() && !terminated) {
+                dispatch(batch.get(dispatched++));
+            }
+        } finally {
+            // The rest of the batch is never handled, after termination or a callback that threw
+            messageBus.handled(batch.size() - dispatched);
+        }
+    }
+
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    void unregisterScheduled() {
+        messageBus.unregister(this);
+    }
+
+    private void recordBatch(int size) {
+        batchesTaken++;
+        messagesTaken += size;
+    }
 }
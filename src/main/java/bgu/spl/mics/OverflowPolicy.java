@@ -0,0 +1,13 @@
+package bgu.spl.mics;
+
+/**
+ * What a {@link BoundedMailbox} does with a new event when it is full.
+ * Possible policies:
+ * - BLOCK: The sender waits until the consumer makes room.
+ * - DROP_OLDEST: The oldest waiting event is discarded to make room.
+ * - REJECT: The new event is not accepted.
+ * Broadcasts and tick deadlines are never discarded, they always wait for room.
+ */
+public enum OverflowPolicy {
+    BLOCK, DROP_OLDEST, REJECT
+}
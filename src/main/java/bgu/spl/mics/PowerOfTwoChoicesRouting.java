@@ -0,0 +1,26 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link RoutingPolicy} that picks two subscribed micro-services at random
+ * and sends the event to the one with fewer waiting messages.
+ * It looks at only two queues per event, yet keeps backlogs almost as even as
+ * {@link LeastQueueDepthRouting}.
+ */
+public class PowerOfTwoChoicesRouting implements RoutingPolicy<Event<?>> {
+
+    @Override
+    public MicroService select(Event<?> event, MicroService[] candidates, ToIntFunction<MicroService> backlog) {
+        if (candidates.length == 1) {
+            return candidates[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.length);
+        // Draw the second one among the others, so the two choices are always different
+        int second = (first + 1 + random.nextInt(candidates.length - 1)) % candidates.length;
+        return backlog.applyAsInt(candidates[second]) < backlog.applyAsInt(candidates[first])
+                ? candidates[second] : candidates[first];
+    }
+}
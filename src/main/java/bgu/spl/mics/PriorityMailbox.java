@@ -0,0 +1,52 @@
+package bgu.spl.mics;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An unbounded {@link Mailbox} in which messages of a few urgent types, e.g.
+ * termination broadcasts, jump ahead of all the other waiting messages.
+ * Urgent messages are taken first-in first-out among themselves, and so are
+ * the other messages.
+ */
+public class PriorityMailbox extends AbstractMailbox {
+
+    private final Set<Class<? extends Message>> urgentTypes;
+    private final ArrayDeque<Message> urgent = new ArrayDeque<>();
+    private final ArrayDeque<Message> regular = new ArrayDeque<>();
+
+    /**
+     * Constructor for PriorityMailbox.
+     *
+     * @param urgentTypes The message types that are taken before all others.
+     */
+    @SafeVarargs
+    public PriorityMailbox(Class<? extends Message>... urgentTypes) {
+        this.urgentTypes = new HashSet<>();
+        for (Class<? extends Message> type : urgentTypes) {
+            this.urgentTypes.add(type);
+        }
+    }
+
+    @Override
+    protected boolean insert(Message message) {
+        if (urgentTypes.contains(message.getClass())) {
+            urgent.addLast(message);
+        } else {
+            regular.addLast(message);
+        }
+        return true;
+    }
+
+    @Override
+    protected Message remove() {
+        Message message = urgent.pollFirst();
+        return message != null ? message : regular.pollFirst();
+    }
+
+    @Override
+    protected int count() {
+        return urgent.size() + regular.size();
+    }
+}
@@ -0,0 +1,27 @@
+package bgu.spl.mics;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Decides which of the micro-services subscribed to an event type receives
+ * each {@link Event} of that type. A policy is set per event type with
+ * {@link MessageBusImpl#setRoutingPolicy(Class, RoutingPolicy)}; event types
+ * without a policy are distributed round-robin.
+ * <p>
+ * Implementations must be thread-safe, since any micro-service may send events.
+ *
+ * @param <E> The type of the routed events.
+ */
+public interface RoutingPolicy<E> {
+
+    /**
+     * Picks the micro-service that should handle {@code event}.
+     * <p>
+     * @param event      The event being sent.
+     * @param candidates The micro-services subscribed to the type of {@code event},
+     *                   never empty. The array must not be modified.
+     * @param backlog    Gives the number of messages waiting in the queue of a candidate.
+     * @return One of {@code candidates}.
+     */
+    MicroService select(E event, MicroService[] candidates, ToIntFunction<MicroService> backlog);
+}
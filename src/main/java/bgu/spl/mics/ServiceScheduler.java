@@ -0,0 +1,237 @@
+package bgu.spl.mics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs many {@link MicroService}s over a fixed pool of worker threads, as an
+ * alternative to giving every micro-service its own thread with
+ * {@link MicroService#run()}.
+ * <p>
+ * A micro-service is scheduled on the pool only when its message queue is not
+ * empty. Each time it is scheduled it handles at most a bounded batch of
+ * messages and then yields its worker to the other micro-services: a
+ * micro-service with more messages waiting is scheduled again behind the
+ * ones already waiting for a worker.
+ * A micro-service is never scheduled twice at the same time, so its callbacks
+ * are still called one at a time, exactly as in its own event loop.
+ */
+public class ServiceScheduler {
+
+    private final ExecutorService pool;
+    private final int batchSize;
+    private int running = 0; // Number of started micro-services that did not terminate yet
+
+    /**
+     * Constructor for ServiceScheduler, with one worker per available core and
+     * batches of 64 messages.
+     */
+    public ServiceScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    /**
+     * Constructor for ServiceScheduler.
+     *
+     * @param parallelism The number of worker threads.
+     * @param batchSize   The maximal number of messages a micro-service handles before yielding.
+     */
+    public ServiceScheduler(int parallelism, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, instead received: " + batchSize);
+        }
+        // All the workers share one FIFO queue of ready micro-services. A work-stealing pool would run the turn
+        // a worker schedules before the turns scheduled by other threads, so a busy micro-service would never yield
+        this.pool = Executors.newFixedThreadPool(parallelism);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Registers {@code service} with the message-bus and runs its
+     * {@link MicroService#initialize()} on the pool. From then on the service
+     * is scheduled whenever messages are waiting in its queue, until it terminates.
+     * A service must be started either by a scheduler or by {@link MicroService#run()}, never both.
+     *
+     * @param service The micro-service to start.
+     */
+    public void start(MicroService service) {
+        Slot slot = new Slot(service);
+        service.attachScheduler(slot);
+        synchronized (this) {
+            running++;
+        }
+        // The initialization counts as the first turn of the service, so no message is handled before it ends
+        slot.scheduled.set(true);
+        pool.execute(() -> {
+            boolean started = false;
+            try {
+                service.initializeScheduled();
+                started = true;
+            } finally {
+                if (started) {
+                    slot.yieldTurn();
+                } else {
+                    slot.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until all the micro-services started by this scheduler terminated.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void awaitTermination() throws InterruptedException {
+        while (running > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Stops the worker threads. Micro-services that did not terminate yet will not handle any more messages.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private synchronized void serviceTerminated() {
+        running--;
+        notifyAll();
+    }
+
+    /**
+     * The scheduling state of one micro-service.
+     */
+    final class Slot {
+        private final MicroService service;
+        // True while the service is queued on the pool or handling messages, guards the single-threaded guarantee
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final List<Message> batch = new ArrayList<>(batchSize);
+        private Mailbox mailbox;
+
+        private Slot(MicroService service) {
+            this.service = service;
+        }
+
+        /**
+         * Wraps the mailbox the message-bus allocates for the service, so every
+         * accepted message schedules the service.
+         *
+         * @param inner The mailbox the service asked for.
+         * @return The mailbox to register with the message-bus.
+         */
+        Mailbox wrap(Mailbox inner) {
+            mailbox = new SchedulingMailbox(inner, this);
+            return mailbox;
+        }
+
+        // Puts the service on the pool, unless it is already there
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                pool.execute(this::runTurn);
+            }
+        }
+
+        // Handles one batch of messages, then yields the worker
+        private void runTurn() {
+            boolean failed = true;
+            try {
+                mailbox.drainTo(batch, batchSize);
+                service.dispatchAll(batch);
+                failed = false;
+            } finally {
+                batch.clear();
+                if (failed || service.isTerminated()) {
+                    finish();
+                } else {
+                    yieldTurn();
+                }
+            }
+        }
+
+        // Ends the turn, and takes another one if messages arrived meanwhile
+        private void yieldTurn() {
+            scheduled.set(false);
+            if (mailbox.size() > 0) {
+                schedule();
+            }
+        }
+
+        private void finish() {
+            service.unregisterScheduled();
+            serviceTerminated();
+        }
+    }
+
+    /**
+     * Delegates to the mailbox of a micro-service and schedules the
+     * micro-service after every accepted message.
+     */
+    private static final class SchedulingMailbox implements Mailbox {
+        private final Mailbox inner;
+        private final Slot slot;
+
+        private SchedulingMailbox(Mailbox inner, Slot slot) {
+            this.inner = inner;
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean put(Message message) {
+            boolean accepted = inner.put(message);
+            if (accepted) {
+                slot.schedule();
+            }
+            return accepted;
+        }
+
+        @Override
+        public int putAll(Collection<? extends Message> batch) {
+            int accepted = inner.putAll(batch);
+            if (accepted > 0) {
+                slot.schedule();
+            }
+            return accepted;
+        }
+
+        @Override
+        public Message take() throws InterruptedException {
+            return inner.take();
+        }
+
+        @Override
+        public int takeBatch(Collection<? super Message> batch, int maxMessages) throws InterruptedException {
+            return inner.takeBatch(batch, maxMessages);
+        }
+
+        @Override
+        public int drainTo(Collection<? super Message> batch, int maxMessages) {
+            return inner.drainTo(batch, maxMessages);
+        }
+
+        @Override
+        public int size() {
+            return inner.size();
+        }
+
+        @Override
+        public int close() {
+            return inner.close();
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return inner.getDroppedCount();
+        }
+
+        @Override
+        public long takeDroppedCount() {
+            return inner.takeDroppedCount();
+        }
+    }
+}
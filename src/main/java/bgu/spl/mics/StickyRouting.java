@@ -0,0 +1,38 @@
+package bgu.spl.mics;
+
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link RoutingPolicy} that sends all the events with the same key to the
+ * same subscribed micro-service, e.g. all the detections of one camera to the
+ * same LiDAR worker. The key is extracted from the event by a function given
+ * on construction.
+ * <p>
+ * Events are spread by the hash of their key, so keys may move to another
+ * micro-service when the subscribers of the event type change.
+ *
+ * @param <E> The type of the routed events.
+ */
+public class StickyRouting<E> implements RoutingPolicy<E> {
+
+    private final Function<? super E, ?> key;
+
+    /**
+     * Constructor for StickyRouting.
+     *
+     * @param key Extracts the routing key of an event, may return null.
+     */
+    public StickyRouting(Function<? super E, ?> key) {
+        this.key = key;
+    }
+
+    @Override
+    public MicroService select(E event, MicroService[] candidates, ToIntFunction<MicroService> backlog) {
+        Object eventKey = key.apply(event);
+        int hash = eventKey == null ? 0 : eventKey.hashCode();
+        // Spread the bits, so keys with similar hash codes still land on different micro-services
+        hash ^= (hash >>> 16);
+        return candidates[Math.floorMod(hash, candidates.length)];
+    }
+}
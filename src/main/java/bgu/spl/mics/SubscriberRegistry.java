@@ -0,0 +1,119 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of which micro-services are subscribed to which message types.
+ * <p>
+ * Every message type owns a {@link Ring} of handlers: a copy-on-write array
+ * together with an atomic round-robin cursor, so picking the next handler is
+ * lock-free and allocation-free. Changes to a ring are serialized on the ring
+ * itself, so subscriptions to different types never contend.
+ * A reverse index from each micro-service to the types it subscribed to lets
+ * {@link #unsubscribeAll(MicroService)} touch only the rings of that service.
+ */
+class SubscriberRegistry {
+
+    private static final MicroService[] NO_HANDLERS = new MicroService[0];
+
+    private final ConcurrentHashMap<Class<? extends Message>, Ring> rings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MicroService, Set<Class<? extends Message>>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * The handlers of a single message type.
+     */
+    static final class Ring {
+        private volatile MicroService[] handlers = NO_HANDLERS;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        /**
+         * @return the next handler in round-robin order, or null if the ring is empty.
+         */
+        MicroService next() {
+            MicroService[] snapshot = handlers;
+            if (snapshot.length == 0) {
+                return null;
+            }
+            return snapshot[Math.floorMod(cursor.getAndIncrement(), snapshot.length)];
+        }
+
+        /**
+         * @return the current handlers. The returned array must not be modified.
+         */
+        MicroService[] handlers() {
+            return handlers;
+        }
+
+        private synchronized void add(MicroService m) {
+            MicroService[] copy = Arrays.copyOf(handlers, handlers.length + 1);
+            copy[handlers.length] = m;
+            handlers = copy;
+        }
+
+        private synchronized void remove(MicroService m) {
+            MicroService[] current = handlers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == m) {
+                    MicroService[] copy = new MicroService[current.length - 1];
+                    System.arraycopy(current, 0, copy, 0, i);
+                    System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+                    handlers = copy;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds {@code m} to the handlers of {@code type}.
+     *
+     * @param type The message type.
+     * @param m    The subscribing micro-service.
+     */
+    void subscribe(Class<? extends Message> type, MicroService m) {
+        rings.computeIfAbsent(type, t -> new Ring()).add(m);
+        subscriptions.computeIfAbsent(m, service -> ConcurrentHashMap.newKeySet()).add(type);
+    }
+
+    /**
+     * Gets the ring of handlers of {@code type}.
+     *
+     * @param type The message type.
+     * @return The ring, or null if nobody ever subscribed to {@code type}.
+     */
+    Ring ringOf(Class<? extends Message> type) {
+        return rings.get(type);
+    }
+
+    /**
+     * Gets the current handlers of {@code type}.
+     *
+     * @param type The message type.
+     * @return The handlers snapshot. The returned array must not be modified.
+     */
+    MicroService[] handlersOf(Class<? extends Message> type) {
+        Ring ring = rings.get(type);
+        return ring == null ? NO_HANDLERS : ring.handlers();
+    }
+
+    /**
+     * Removes {@code m} from every ring it subscribed to.
+     *
+     * @param m The micro-service to remove.
+     */
+    void unsubscribeAll(MicroService m) {
+        Set<Class<? extends Message>> types = subscriptions.remove(m);
+        if (types == null) {
+            return;
+        }
+        for (Class<? extends Message> type : types) {
+            Ring ring = rings.get(type);
+            if (ring != null) {
+                ring.remove(m);
+            }
+        }
+    }
+}
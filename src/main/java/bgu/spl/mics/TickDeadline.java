@@ -0,0 +1,19 @@
+package bgu.spl.mics;
+
+/**
+ * Wakes a micro-service at a tick it scheduled work for with
+ * {@link MicroService#scheduleAtTick(int, Callback)}. Delivered straight to the
+ * message queue of that micro-service by the {@link TickScheduler}.
+ * <p>
+ * Deadlines never reach the callbacks of a micro-service, they run the
+ * callbacks scheduled for their tick.
+ */
+final class TickDeadline implements Message {
+    final MicroService target;
+    final int tick;
+
+    TickDeadline(MicroService target, int tick) {
+        this.target = target;
+        this.tick = tick;
+    }
+}
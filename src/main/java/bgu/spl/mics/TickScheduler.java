@@ -0,0 +1,70 @@
+package bgu.spl.mics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wakes micro-services at the ticks they scheduled work for, so a micro-service
+ * with sparse work does not need to handle every tick broadcast.
+ * <p>
+ * Micro-services register deadlines with {@link MicroService#scheduleAtTick(int, Callback)}.
+ * The time source of the system calls {@link #advance(int)} on every tick, and only
+ * the micro-services with a deadline at that tick receive a message.
+ * The deadlines are kept in a {@link TimingWheel}.
+ */
+public class TickScheduler {
+
+    private final TimingWheel<TickDeadline> wheel;
+    private final MessageBusImpl messageBus;
+
+    private TickScheduler() {
+        this.wheel = new TimingWheel<>(0);
+        this.messageBus = MessageBusImpl.getInstance();
+    }
+
+    private static class SingletonHolder {
+        private static final TickScheduler INSTANCE = new TickScheduler();
+    }
+
+    /**
+     * @return The singleton instance of TickScheduler.
+     */
+    public static TickScheduler getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Advances to {@code tick} and wakes the micro-services whose deadlines were reached.
+     * Should be called by the time source of the system once per tick, in order.
+     *
+     * @param tick The current tick.
+     */
+    public void advance(int tick) {
+        List<TickDeadline> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(tick, due);
+        }
+        for (TickDeadline deadline : due) {
+            messageBus.deliver(deadline.target, deadline);
+        }
+    }
+
+    /**
+     * @return The last tick the scheduler advanced to.
+     */
+    public synchronized int currentTick() {
+        return wheel.currentTick();
+    }
+
+    // Wakes m at tick, right away if the tick was already reached
+    void schedule(MicroService m, int tick) {
+        TickDeadline deadline = new TickDeadline(m, tick);
+        boolean scheduled;
+        synchronized (this) {
+            scheduled = wheel.schedule(tick, deadline);
+        }
+        if (!scheduled) {
+            messageBus.deliver(m, deadline);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+
+/**
+ * A hierarchical timing wheel holding items until the tick they are due.
+ * <p>
+ * The wheel has six levels of 64 slots. Level 0 has a
+ * slot per tick for the next 64 ticks, every level above has a slot per 64 slots
+ * of the level below it. An item is kept at the lowest level that reaches its
+ * deadline, and moves down a level each time the slot holding it comes up, so
+ * scheduling an item and releasing it both take O(1) however far ahead it is due.
+ * Advancing over ticks with nothing due costs O(1) per tick, and nothing at all
+ * while the wheel is empty.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <T> The type of the scheduled items.
+ */
+public class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6; // 64^6 ticks, farther than any int deadline
+
+    private final Node<T>[][] slots;
+    private long now; // The last tick advanced to
+    private int size;
+
+    // A scheduled item, linked to the other items of its slot
+    private static final class Node<T> {
+        private final long deadline;
+        private final T item;
+        private Node<T> next;
+
+        private Node(long deadline, T item) {
+            this.deadline = deadline;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Constructor for TimingWheel.
+     *
+     * @param startTick The current tick, items are due after it.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int startTick) {
+        this.slots = (Node<T>[][]) new Node<?>[LEVELS][SLOTS];
+        this.now = startTick;
+        this.size = 0;
+    }
+
+    /**
+     * Schedules {@code item} to be released when the wheel advances to {@code deadline}.
+     *
+     * @param deadline The tick the item is due.
+     * @param item     The item.
+     * @return true if the item was scheduled, false if {@code deadline} is not after
+     *         the current tick, in which case the item is already due and is not kept.
+     */
+    public boolean schedule(int deadline, T item) {
+        if (deadline <= now) {
+            return false;
+        }
+        insert(new Node<>(deadline, item));
+        size++;
+        return true;
+    }
+
+    /**
+     * Advances the wheel tick by tick up to {@code tick}, moving every item that
+     * becomes due into {@code due}.
+     *
+     * @param tick The tick to advance to. Nothing happens if it is not after the current tick.
+     * @param due  The collection to add the due items to.
+     */
+    public void advance(int tick, Collection<? super T> due) {
+        while (now < tick) {
+            if (size == 0) {
+                now = tick; // Nothing can become due, skip the ticks
+                return;
+            }
+            now++;
+            // Cascade from the top, so an item moving down several levels at once still lands before level 0 fires
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((now & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    Node<T> node = takeSlot(level, slotOf(now, level));
+                    while (node != null) {
+                        Node<T> next = node.next;
+                        insert(node);
+                        node = next;
+                    }
+                }
+            }
+            for (Node<T> node = takeSlot(0, slotOf(now, 0)); node != null; node = node.next) {
+                due.add(node.item);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * @return The last tick the wheel advanced to.
+     */
+    public int currentTick() {
+        return (int) now;
+    }
+
+    /**
+     * @return The number of scheduled items that are not due yet.
+     */
+    public int size() {
+        return size;
+    }
+
+    // Puts the node at the lowest level that reaches its deadline from now
+    private void insert(Node<T> node) {
+        long delta = node.deadline - now;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = slotOf(node.deadline, level);
+        node.next = slots[level][slot];
+        slots[level][slot] = node;
+    }
+
+    private Node<T> takeSlot(int level, int slot) {
+        Node<T> head = slots[level][slot];
+        slots[level][slot] = null;
+        return head;
+    }
+
+    private static int slotOf(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+}
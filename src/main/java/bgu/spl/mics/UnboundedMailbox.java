@@ -0,0 +1,28 @@
+package bgu.spl.mics;
+
+import java.util.ArrayDeque;
+
+/**
+ * A first-in first-out {@link Mailbox} without a capacity limit.
+ * This is the default mailbox of every {@link MicroService}.
+ */
+public class UnboundedMailbox extends AbstractMailbox {
+
+    private final ArrayDeque<Message> messages = new ArrayDeque<>();
+
+    @Override
+    protected boolean insert(Message message) {
+        messages.addLast(message);
+        return true;
+    }
+
+    @Override
+    protected Message remove() {
+        return messages.pollFirst();
+    }
+
+    @Override
+    protected int count() {
+        return messages.size();
+    }
+}
@@ -0,0 +1,11 @@
+package bgu.spl.mics.application.messages.broadcasts;
+
+import bgu.spl.mics.Broadcast;
+
+/**
+ * Sent by the Fusion-SLAM service to its shards once it handled all its tracked objects,
+ * so each shard merges into the global map and terminates.
+ * It reaches a shard after every FusionShardEvent sent to it before.
+ */
+public class FusionShardFlushBroadcast implements Broadcast {
+}
@@ -0,0 +1,19 @@
+package bgu.spl.mics.application.messages.broadcasts;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.application.objects.Pose;
+
+/**
+ * Sent by the Fusion-SLAM service to its shards, so each of them knows every pose of the robot.
+ */
+public class PoseBroadcast implements Broadcast {
+    private final Pose pose;
+
+    public PoseBroadcast(Pose pose) {
+        this.pose = pose;
+    }
+
+    public Pose getPose() {
+        return pose;
+    }
+}
@@ -0,0 +1,53 @@
+package bgu.spl.mics.application.messages.events;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+import java.util.List;
+
+/**
+ * Represents an event sent by the Fusion-SLAM service to one of its shards.
+ * Contains the tracked objects whose landmarks belong to the shard.
+ */
+public class FusionShardEvent implements Event<List<TrackedObject>> {
+
+    private final int shard;
+    private final List<TrackedObject> trackedObjects;
+
+    /**
+     * Constructor for FusionShardEvent.
+     *
+     * @param shard          The index of the shard the objects belong to.
+     * @param trackedObjects The tracked objects.
+     */
+    public FusionShardEvent(int shard, List<TrackedObject> trackedObjects) {
+        this.shard = shard;
+        this.trackedObjects = trackedObjects;
+    }
+
+    /**
+     * Gets the index of the shard the objects belong to, used to route the event.
+     *
+     * @return The shard index.
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Gets the tracked objects of this event.
+     *
+     * @return The list of tracked objects.
+     */
+    public List<TrackedObject> getTrackedObjects() {
+        return trackedObjects;
+    }
+
+    @Override
+    public String toString() {
+        return "FusionShardEvent{" +
+                "shard=" + shard +
+                ", trackedObjects=" + trackedObjects +
+                '}';
+    }
+}
@@ -1,14 +1,29 @@
 package bgu.spl.mics.application.messages.events;
 
 import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.Pose;
 
 public class PoseEvent<T> implements Event<T> {
     private final String robotId;
     private final long timestamp;
+    private final Pose pose;
 
     public PoseEvent(String robotId, long timestamp) {
         this.robotId = robotId;
         this.timestamp = timestamp;
+        this.pose = null;
+    }
+
+    /**
+     * Constructor for PoseEvent.
+     *
+     * @param robotId The ID of the robot.
+     * @param pose    The pose of the robot, stamped with the time it was reached.
+     */
+    public PoseEvent(String robotId, Pose pose) {
+        this.robotId = robotId;
+        this.timestamp = pose.getTimestamp();
+        this.pose = pose;
     }
 
     public String getRobotId() {
@@ -18,4 +33,13 @@ public class PoseEvent<T> implements Event<T> {
     public long getTimestamp() {
         return timestamp;
     }
+
+    /**
+     * Gets the pose carried by this event.
+     *
+     * @return The pose, or null if the event only carries its timestamp.
+     */
+    public Pose getPose() {
+        return pose;
+    }
 }
@@ -1,17 +1,21 @@
 package bgu.spl.mics.application.objects;
 
-import java.util.ArrayList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Represents a camera sensor on the robot.
  * Responsible for detecting objects in the environment.
+ * Closing the camera releases the source of its detections.
  */
-public class Camera {
+public class Camera implements Closeable {
     private final int id;
     private final int frequency;
     private STATUS status;
-    private final List<StampedDetectedObjects> detectedObjectsList; // Time-stamped detected objects
+    private final CameraDataSource detections; // Time-stamped detected objects
 
     /**
      * Constructor for Camera.
@@ -25,27 +29,40 @@ public class Camera {
         this.id = id;
         this.frequency = frequency;
         this.status = STATUS.UP;
-        this.detectedObjectsList = detectedObjectsList;
+        this.detections = new IndexedCameraData(detectedObjectsList);
+    }
+
+    /**
+     * Constructor for Camera, with detections from any source, e.g. a {@link StreamingCameraData}.
+     *
+     * @param id         The unique ID of the camera.
+     * @param frequency  The time interval (in ticks) at which the camera operates.
+     * @param detections The source of the stamped detected objects of this camera.
+     */
+    public Camera(int id, int frequency, CameraDataSource detections) {
+        this.id = id;
+        this.frequency = frequency;
+        this.status = STATUS.UP;
+        this.detections = detections;
     }
 
     /**
      * Detects objects at the specified tick.
      *
      * @param tick The current tick.
-     * @return A StampedDetectedObjects instance if objects are detected at this tick; otherwise, an empty instance.
+     * @return A StampedDetectedObjects instance if objects are detected at this tick; otherwise, an empty instance stamped with the tick.
      */
     public StampedDetectedObjects detectObjects(int tick) {
         if (status == STATUS.UP) {
             // Find the objects detected at the current tick
-            for (StampedDetectedObjects stampedDetectedObjects : detectedObjectsList) {
-                if (stampedDetectedObjects.getTimestamp() == tick) {
-                    return stampedDetectedObjects;
-                }
+            StampedDetectedObjects stampedDetectedObjects = detections.detectionsAt(tick);
+            if (stampedDetectedObjects != null) {
+                return stampedDetectedObjects;
             }
         }
 
         // If status is not up or no objects are detected at the current tick, return an empty instance
-        return new StampedDetectedObjects(tick, new ArrayList<>());
+        return new StampedDetectedObjects(tick, Collections.emptyList());
     }
 
     /**
@@ -84,13 +101,25 @@ public class Camera {
         this.status = status;
     }
 
+    /**
+     * Releases the source of the detections, once the camera detects no more objects.
+     */
+    @Override
+    public void close() {
+        try {
+            detections.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed closing the detections of camera " + id, e);
+        }
+    }
+
     @Override
     public String toString() {
         return "Camera{" +
                 "id=" + id +
                 ", frequency=" + frequency +
                 ", status=" + status +
-                ", detectedObjectsList=" + detectedObjectsList +
+                ", detections=" + detections +
                 '}';
     }
 }
@@ -0,0 +1,28 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Provides the recorded detections of a single camera, by tick.
+ * A source that holds a file open releases it when closed.
+ */
+public interface CameraDataSource extends Closeable {
+
+    /**
+     * Gets the objects the camera detected at the specified tick.
+     *
+     * @param tick The tick to look up.
+     * @return The objects detected at {@code tick}, or null if there are none.
+     */
+    StampedDetectedObjects detectionsAt(int tick);
+
+    /**
+     * Releases the resources of the source. Sources held in memory have nothing to release.
+     *
+     * @throws IOException if the source cannot be closed.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -1,36 +1,272 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages the fusion of sensor data for simultaneous localization and mapping (SLAM).
  * Combines data from multiple sensors (e.g., LiDAR, camera) to build and update a global map.
  * Implements the Singleton pattern to ensure a single instance of FusionSlam exists.
+ * <p>
+ * The map is indexed by landmark id, so placing a tracked object costs O(1) whatever the
+ * size of the map: a new id adds a landmark, a known id averages the landmark's coordinates
+ * with the new observation. Updates of different landmarks run concurrently, updates of the
+ * same landmark are applied one at a time.
+ * <p>
+ * A {@link LandMarkGrid} kept up to date with the map answers region queries, such as the
+ * landmarks around the robot, by visiting only the grid cells the region overlaps.
+ * <p>
+ * Tracked objects may arrive before the pose of their time, since poses and tracked objects
+ * travel in different events. Such objects wait in a bounded {@link ReorderBuffer} until the pose is recorded.
  */
 public class FusionSlam {
-    private List<LandMark> landMarks; // Represent the map of the environment
-    private List<Pose> poses; // Represent previous poses needed for calculations
+    private final ConcurrentHashMap<String, LandMark> landMarks; // Represent the map of the environment, by landmark id
+    private final PoseHistory poses; // Represent previous poses needed for calculations
+    private final LandMarkGrid grid; // Spatial index of landMarks, updated with every landmark change
+    private final PoseTransformer transformer; // Brings tracked objects to the charging station's frame
+    private final ReorderBuffer reorderBuffer; // Tracked objects waiting for the pose at their time
+    private static final double DEFAULT_GRID_CELL_SIZE = 1.0; // In the unit of the coordinates, about the size of a landmark
+    private static final int DEFAULT_BUFFER_CAPACITY = 10000; // Tracked objects
+    private static final int DEFAULT_MAX_SKEW = 10; // Ticks
 
     // Singleton instance holder
     private static class FusionSlamHolder {
         private static final FusionSlam INSTANCE = new FusionSlam();
     }
 
+    private FusionSlam() {
+        this(Collections.emptyList(), Collections.emptyList());
+    }
+
     public FusionSlam(List<LandMark> landMarks, List<Pose> poses) {
-        this.landMarks = landMarks;
-        this.poses = poses;
+        this(landMarks, poses, DEFAULT_BUFFER_CAPACITY, DEFAULT_MAX_SKEW);
+    }
+
+    /**
+     * Constructor for FusionSlam.
+     *
+     * @param landMarks      The landmarks to start with.
+     * @param poses          The poses to start with.
+     * @param bufferCapacity The maximal number of tracked objects waiting for their pose.
+     * @param maxSkew        The maximal number of ticks a pose may arrive after a later one.
+     */
+    public FusionSlam(List<LandMark> landMarks, List<Pose> poses, int bufferCapacity, int maxSkew) {
+        this(landMarks, poses, bufferCapacity, maxSkew, DEFAULT_GRID_CELL_SIZE);
+    }
+
+    /**
+     * Constructor for FusionSlam.
+     *
+     * @param landMarks      The landmarks to start with.
+     * @param poses          The poses to start with.
+     * @param bufferCapacity The maximal number of tracked objects waiting for their pose.
+     * @param maxSkew        The maximal number of ticks a pose may arrive after a later one.
+     * @param gridCellSize   The side of a cell of the landmark grid, in the unit of the coordinates.
+     *                       About the size of a landmark keeps both the cells per landmark and the landmarks per cell low.
+     */
+    public FusionSlam(List<LandMark> landMarks, List<Pose> poses, int bufferCapacity, int maxSkew, double gridCellSize) {
+        this.landMarks = new ConcurrentHashMap<>();
+        this.grid = new LandMarkGrid(gridCellSize);
+        for (LandMark landMark : landMarks) {
+            this.landMarks.put(landMark.getId(), landMark);
+            grid.update(landMark.getId(), landMark.getPointCloud());
+        }
+        this.poses = new PoseHistory(poses);
+        this.transformer = new PoseTransformer();
+        this.reorderBuffer = new ReorderBuffer(this.poses, bufferCapacity, maxSkew);
     }
 
     public static FusionSlam getInstance() {return FusionSlamHolder.INSTANCE;}
 
-    public List<LandMark> getLandMarks() {return landMarks;}
+    /**
+     * Gets the landmarks of the map.
+     *
+     * @return A snapshot of the landmarks, in no particular order.
+     */
+    public List<LandMark> getLandMarks() {return new ArrayList<>(landMarks.values());}
+
+    /**
+     * Gets a landmark of the map.
+     *
+     * @param id The ID of the landmark.
+     * @return The landmark, or null if the map has no landmark with this id.
+     */
+    public LandMark getLandMark(String id) {return landMarks.get(id);}
+
+    public int getLandMarkCount() {return landMarks.size();}
+
+    public List<Pose> getPoses() {return poses.asList();}
+
+    /**
+     * Records a pose of the robot, needed to place the objects tracked at its time.
+     * The objects that were waiting for it are placed now, as one batch.
+     *
+     * @param pose The pose.
+     * @return The number of new landmarks.
+     */
+    public int addPose(Pose pose) {
+        poses.add(pose);
+        // After adding the pose, so an object parked concurrently either sees the pose or is released here
+        List<TrackedObject> released = reorderBuffer.release(pose.getTimestamp());
+        return released.isEmpty() ? 0 : processTrackedObjects(released);
+    }
+
+    /**
+     * Gets the buffer of the tracked objects waiting for their pose, with its counters.
+     *
+     * @return The reorder buffer.
+     */
+    public ReorderBuffer getReorderBuffer() {
+        return reorderBuffer;
+    }
+
+    /**
+     * Gets the pose of the robot at a time.
+     *
+     * @param time The time.
+     * @return The pose recorded at this time, or null if there is none yet.
+     */
+    public Pose getPose(int time) {
+        return poses.getPose(time);
+    }
+
+    /**
+     * Adds a landmark to the map, or averages the coordinates of the landmark with the
+     * same id with the new observation.
+     *
+     * @param id          The ID of the landmark.
+     * @param description The description of the landmark, used when it is new.
+     * @param coordinates The observed coordinates, in the charging station's frame.
+     * @return true if the landmark is new.
+     */
+    public boolean updateLandMark(String id, String description, PointCloud coordinates) {
+        return putLandMark(id, description, coordinates, true);
+    }
+
+    // Adds a landmark, or gives the landmark with the same id new coordinates: their average with these, or these
+    private boolean putLandMark(String id, String description, PointCloud coordinates, boolean average) {
+        boolean[] added = {false};
+        // Inside compute, so the grid updates of one landmark never interleave
+        landMarks.compute(id, (key, landMark) -> {
+            if (landMark == null) {
+                added[0] = true;
+                grid.update(id, coordinates);
+                return new LandMark(id, description, coordinates);
+            }
+            // The new cells are indexed before the coordinates change and the old ones dropped after,
+            // so a concurrent query finds the landmark at whichever coordinates it reads
+            PointCloud updated = average ? landMark.getPointCloud().averageWith(coordinates) : coordinates;
+            grid.add(id, updated);
+            landMark.setPointCloud(updated); // In place, the map entry stays the same object
+            grid.trim(id, updated);
+            return landMark;
+        });
+        return added[0];
+    }
+
+    /**
+     * Gets the landmarks with at least one point within a radius of a position.
+     *
+     * @param x      The x-coordinate of the center.
+     * @param y      The y-coordinate of the center.
+     * @param radius The radius.
+     * @return The landmarks, in no particular order.
+     */
+    public List<LandMark> getLandMarksWithin(double x, double y, double radius) {
+        List<LandMark> found = new ArrayList<>();
+        for (String id : grid.candidates(x - radius, y - radius, x + radius, y + radius)) {
+            LandMark landMark = landMarks.get(id);
+            if (landMark != null && landMark.getPointCloud().anyWithin(x, y, radius)) {
+                found.add(landMark);
+            }
+        }
+        return found;
+    }
 
-    public List<Pose> getPoses() {return poses;}
+    /**
+     * Gets the landmarks with at least one point within a radius of the robot.
+     *
+     * @param pose   The pose of the robot.
+     * @param radius The radius.
+     * @return The landmarks, in no particular order.
+     */
+    public List<LandMark> getLandMarksNear(Pose pose, double radius) {
+        return getLandMarksWithin(pose.getX(), pose.getY(), radius);
+    }
+
+    /**
+     * Gets the landmarks with at least one point inside a box.
+     *
+     * @param minX The lowest x-coordinate of the box.
+     * @param minY The lowest y-coordinate of the box.
+     * @param maxX The highest x-coordinate of the box.
+     * @param maxY The highest y-coordinate of the box.
+     * @return The landmarks, in no particular order.
+     */
+    public List<LandMark> getLandMarksInBox(double minX, double minY, double maxX, double maxY) {
+        List<LandMark> found = new ArrayList<>();
+        for (String id : grid.candidates(minX, minY, maxX, maxY)) {
+            LandMark landMark = landMarks.get(id);
+            if (landMark != null && landMark.getPointCloud().anyInside(minX, minY, maxX, maxY)) {
+                found.add(landMark);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Places tracked objects on the map, using the pose of the robot at the time each one was tracked.
+     * Objects tracked at a time with no recorded pose yet are parked until it is recorded by {@link #addPose(Pose)}.
+     *
+     * @param trackedObjects The tracked objects, in the robot's frame.
+     * @return The number of new landmarks.
+     */
+    public int processTrackedObjects(List<TrackedObject> trackedObjects) {
+        PointCloud[] transformed = transformer.transform(trackedObjects, poses::getPose);
+        List<TrackedObject> withoutPose = new ArrayList<>();
+        int added = 0;
+        for (int i = 0; i < transformed.length; i++) {
+            TrackedObject trackedObject = trackedObjects.get(i);
+            if (transformed[i] == null) {
+                withoutPose.add(trackedObject);
+            } else if (updateLandMark(trackedObject.getId(), trackedObject.getDescription(), transformed[i])) {
+                added++;
+            }
+        }
+        if (!withoutPose.isEmpty()) {
+            // The poses recorded since the transform are placed right away, the others wait in the buffer
+            List<TrackedObject> ready = reorderBuffer.park(withoutPose);
+            if (!ready.isEmpty()) {
+                added += processTrackedObjects(ready);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Merges the landmarks of another map into this one, each replacing the landmark with the same id.
+     * Used to gather the final map from the shards of a sharded fusion: a shard starts with a copy of
+     * the landmarks it owns and refines them, so its version of a landmark is the latest one.
+     *
+     * @param other The map to merge, not modified.
+     * @return The number of new landmarks.
+     */
+    public int merge(FusionSlam other) {
+        int added = 0;
+        for (LandMark landMark : other.landMarks.values()) {
+            if (putLandMark(landMark.getId(), landMark.getDescription(), landMark.getPointCloud(), false)) {
+                added++;
+            }
+        }
+        return added;
+    }
 
     @Override
     public String toString() {
         return "FusionSlam{" +
-                "landMarks=" + landMarks +
+                "landMarks=" + landMarks.values() +
                 ", poses=" + poses +
                 '}';
     }
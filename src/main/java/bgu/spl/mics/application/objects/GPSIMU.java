@@ -9,12 +9,12 @@ import java.util.List;
 public class GPSIMU {
     private int currentTick; // The current time
     private STATUS status;
-    private List<Pose> postList; // Represents time-stamped poses;
+    private final PoseHistory postList; // Represents time-stamped poses, indexed by time
 
     public GPSIMU(int currentTick, STATUS status, List<Pose> postList) {
         this.currentTick = currentTick;
         this.status = status;
-        this.postList = postList;
+        this.postList = new PoseHistory(postList);
     }
 
     public int getCurrentTick() {
@@ -26,9 +26,23 @@ public class GPSIMU {
     }
 
     public List<Pose> getPostList() {
+        return postList.asList();
+    }
+
+    public PoseHistory getPoseHistory() {
         return postList;
     }
 
+    /**
+     * Gets the pose of the robot at a time.
+     *
+     * @param time The time.
+     * @return The pose recorded at this time, or null if there is none.
+     */
+    public Pose getPose(int time) {
+        return postList.getPose(time);
+    }
+
     @Override
     public String toString() {
         return "GPSIMU{" +
@@ -0,0 +1,65 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Camera detections held in memory and indexed by time.
+ * Lookups take O(1) amortized time when ticks are looked up in increasing order, and O(log n) otherwise.
+ */
+public class IndexedCameraData implements CameraDataSource {
+    // The detected objects sorted by timestamp, with the timestamps in a parallel array
+    private final int[] timestamps;
+    private final StampedDetectedObjects[] detectionsByTime;
+    private int cursor; // Index of the first detection not before the last looked up tick
+
+    /**
+     * Constructor for IndexedCameraData.
+     *
+     * @param detectedObjectsList The stamped detected objects of the camera, in any order.
+     *                            If several entries share a timestamp, the first one wins.
+     */
+    public IndexedCameraData(List<StampedDetectedObjects> detectedObjectsList) {
+        // The sort is stable, so the first entry of a timestamp stays first
+        List<StampedDetectedObjects> sorted = new ArrayList<>(detectedObjectsList);
+        sorted.sort(Comparator.comparingInt(StampedDetectedObjects::getTimestamp));
+        int[] times = new int[sorted.size()];
+        StampedDetectedObjects[] detections = new StampedDetectedObjects[sorted.size()];
+        int size = 0;
+        for (StampedDetectedObjects stampedDetectedObjects : sorted) {
+            if (size == 0 || times[size - 1] != stampedDetectedObjects.getTimestamp()) {
+                times[size] = stampedDetectedObjects.getTimestamp();
+                detections[size] = stampedDetectedObjects;
+                size++;
+            }
+        }
+        this.timestamps = Arrays.copyOf(times, size);
+        this.detectionsByTime = Arrays.copyOf(detections, size);
+        this.cursor = 0;
+    }
+
+    @Override
+    public StampedDetectedObjects detectionsAt(int tick) {
+        // Ticks normally only move forward, so continue from where the previous lookup stopped
+        if (cursor > 0 && timestamps[cursor - 1] >= tick) {
+            int index = Arrays.binarySearch(timestamps, tick);
+            cursor = index >= 0 ? index : -index - 1;
+        }
+        while (cursor < timestamps.length && timestamps[cursor] < tick) {
+            cursor++;
+        }
+        if (cursor < timestamps.length && timestamps[cursor] == tick) {
+            return detectionsByTime[cursor];
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedCameraData{" +
+                "detectedObjectsList=" + Arrays.toString(detectionsByTime) +
+                '}';
+    }
+}
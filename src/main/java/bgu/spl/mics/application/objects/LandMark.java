@@ -9,14 +9,18 @@ import java.util.List;
 public class LandMark {
     private final String id;
     private final String description;
-    private final List<CloudPoint> coordinates;
+    private volatile PointCloud coordinates; // Replaced as a whole when the landmark is observed again
 
-    public LandMark(String id, String description, List<CloudPoint> coordinates) {
+    public LandMark(String id, String description, PointCloud coordinates) {
         this.id = id;
         this.description = description;
         this.coordinates = coordinates;
     }
 
+    public LandMark(String id, String description, List<CloudPoint> coordinates) {
+        this(id, description, PointCloud.of(coordinates));
+    }
+
     public String getId() {
         return id;
     }
@@ -26,9 +30,18 @@ public class LandMark {
     }
 
     public List<CloudPoint> getCoordinates() {
+        return coordinates.asList();
+    }
+
+    public PointCloud getPointCloud() {
         return coordinates;
     }
 
+    // Replaces the coordinates with refined ones. Called by FusionSlam while it holds the map entry of this landmark
+    void setPointCloud(PointCloud coordinates) {
+        this.coordinates = coordinates;
+    }
+
     @Override
     public String toString() {
         return "LandMark{" +
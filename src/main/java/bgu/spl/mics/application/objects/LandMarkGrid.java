@@ -0,0 +1,226 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * A uniform grid over the plane, mapping every cell to the ids of the landmarks
+ * whose bounding box overlaps it. A region query only visits the cells the region
+ * overlaps, instead of every landmark of the map.
+ * <p>
+ * The grid is updated incrementally: when a landmark is added or its coordinates
+ * are refined, only the cells it enters or leaves change. Updates of different
+ * landmarks may run concurrently, updates of the same landmark must not.
+ * A landmark is moved in two steps, {@link #add} before its coordinates change and
+ * {@link #trim} after, so a query running meanwhile finds it at its old or its new
+ * coordinates, whichever it sees.
+ * <p>
+ * A landmark whose bounding box covers more than a maximal number of cells is not
+ * put in its cells, it is kept aside and is a candidate of every query, so a very
+ * wide landmark costs neither memory nor time proportional to its area.
+ */
+public class LandMarkGrid {
+    private static final int DEFAULT_MAX_CELLS_PER_LANDMARK = 1024;
+
+    private final double cellSize;
+    private final int maxCellsPerLandMark;
+    private final ConcurrentHashMap<Long, Set<String>> cells; // Landmark ids by cell key
+    private final ConcurrentHashMap<String, int[]> cellRanges; // Cells covered by each landmark: min x, min y, max x, max y
+    private final Set<String> wide; // Landmarks covering too many cells to be put in them
+
+    /**
+     * Constructor for LandMarkGrid.
+     * Landmarks covering more than 1024 cells are kept aside.
+     *
+     * @param cellSize The side of a cell, in the unit of the coordinates.
+     */
+    public LandMarkGrid(double cellSize) {
+        this(cellSize, DEFAULT_MAX_CELLS_PER_LANDMARK);
+    }
+
+    /**
+     * Constructor for LandMarkGrid.
+     *
+     * @param cellSize            The side of a cell, in the unit of the coordinates.
+     * @param maxCellsPerLandMark The maximal number of cells a landmark is put in,
+     *                            wider landmarks are candidates of every query.
+     */
+    public LandMarkGrid(double cellSize, int maxCellsPerLandMark) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive, instead received: " + cellSize);
+        }
+        if (maxCellsPerLandMark < 1) {
+            throw new IllegalArgumentException("Maximal cells per landmark must be at least 1, instead received: " + maxCellsPerLandMark);
+        }
+        this.cellSize = cellSize;
+        this.maxCellsPerLandMark = maxCellsPerLandMark;
+        this.cells = new ConcurrentHashMap<>();
+        this.cellRanges = new ConcurrentHashMap<>();
+        this.wide = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Indexes a landmark at its current coordinates, moving it if it was already indexed elsewhere.
+     * Same as {@link #add} followed by {@link #trim}.
+     *
+     * @param id          The ID of the landmark.
+     * @param coordinates The coordinates of the landmark.
+     */
+    public void update(String id, PointCloud coordinates) {
+        add(id, coordinates);
+        trim(id, coordinates);
+    }
+
+    /**
+     * Indexes a landmark in the cells of its new coordinates, keeping it in the cells it is already in.
+     * To call before the coordinates of the landmark change, then call {@link #trim} once they did.
+     *
+     * @param id          The ID of the landmark.
+     * @param coordinates The new coordinates of the landmark.
+     */
+    public void add(String id, PointCloud coordinates) {
+        int[] range = rangeOf(coordinates);
+        if (range == null) {
+            return;
+        }
+        if (isWide(range)) {
+            wide.add(id);
+            return;
+        }
+        int[] previous = cellRanges.get(id);
+        forEachCell(range, key -> {
+            if (previous == null || isWide(previous) || !contains(previous, key)) {
+                cells.compute(key, (k, ids) -> {
+                    Set<String> cellIds = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                    cellIds.add(id);
+                    return cellIds;
+                });
+            }
+        });
+    }
+
+    /**
+     * Removes a landmark from the cells its coordinates no longer cover, once they changed.
+     *
+     * @param id          The ID of the landmark.
+     * @param coordinates The coordinates of the landmark, as given to the last {@link #add}.
+     */
+    public void trim(String id, PointCloud coordinates) {
+        int[] range = rangeOf(coordinates);
+        int[] previous = range == null ? cellRanges.remove(id) : cellRanges.put(id, range);
+        if (previous == null) {
+            return;
+        }
+        if (isWide(previous)) {
+            if (range == null || !isWide(range)) {
+                wide.remove(id);
+            }
+            return;
+        }
+        forEachCell(previous, key -> {
+            if (range == null || isWide(range) || !contains(range, key)) {
+                cells.computeIfPresent(key, (k, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        });
+    }
+
+    /**
+     * Gets the landmarks that may have a point in a box: every landmark with a point
+     * in the box is returned, possibly along with landmarks near it.
+     *
+     * @param minX The lowest x-coordinate of the box.
+     * @param minY The lowest y-coordinate of the box.
+     * @param maxX The highest x-coordinate of the box.
+     * @param maxY The highest y-coordinate of the box.
+     * @return The ids of the candidate landmarks.
+     */
+    public Set<String> candidates(double minX, double minY, double maxX, double maxY) {
+        Set<String> ids = new HashSet<>(wide);
+        int[] range = {cellOf(minX), cellOf(minY), cellOf(maxX), cellOf(maxY)};
+        // In double, a box spanning the whole int range of cells would overflow a long
+        double cellCount = ((double) range[2] - range[0] + 1) * ((double) range[3] - range[1] + 1);
+        if (cellCount > cells.size()) {
+            // The box covers more cells than are occupied, visit the occupied ones instead
+            for (Map.Entry<Long, Set<String>> cell : cells.entrySet()) {
+                if (contains(range, cell.getKey())) {
+                    ids.addAll(cell.getValue());
+                }
+            }
+        } else {
+            forEachCell(range, key -> {
+                Set<String> cellIds = cells.get(key);
+                if (cellIds != null) {
+                    ids.addAll(cellIds);
+                }
+            });
+        }
+        return ids;
+    }
+
+    /**
+     * @return The number of occupied cells.
+     */
+    public int getOccupiedCellCount() {
+        return cells.size();
+    }
+
+    /**
+     * @return The number of landmarks too wide to be put in their cells.
+     */
+    public int getWideLandMarkCount() {
+        return wide.size();
+    }
+
+    // The cells covered by the bounding box of the coordinates, null for no points
+    private int[] rangeOf(PointCloud coordinates) {
+        if (coordinates.size() == 0) {
+            return null;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < coordinates.size(); i++) {
+            double x = coordinates.getX(i);
+            double y = coordinates.getY(i);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        return new int[]{cellOf(minX), cellOf(minY), cellOf(maxX), cellOf(maxY)};
+    }
+
+    private boolean isWide(int[] range) {
+        return ((double) range[2] - range[0] + 1) * ((double) range[3] - range[1] + 1) > maxCellsPerLandMark;
+    }
+
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long keyOf(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    private static boolean contains(int[] range, long key) {
+        int cellX = (int) (key >> 32);
+        int cellY = (int) key;
+        return cellX >= range[0] && cellX <= range[2] && cellY >= range[1] && cellY <= range[3];
+    }
+
+    // Long counters, so a range reaching Integer.MAX_VALUE still ends
+    private static void forEachCell(int[] range, LongConsumer action) {
+        for (long cellX = range[0]; cellX <= range[2]; cellX++) {
+            for (long cellY = range[1]; cellY <= range[3]; cellY++) {
+                action.accept(keyOf((int) cellX, (int) cellY));
+            }
+        }
+    }
+}
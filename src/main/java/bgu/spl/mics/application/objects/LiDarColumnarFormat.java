@@ -0,0 +1,203 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a LiDAR data JSON file into a compact columnar binary file, which
+ * {@link MappedLiDarData} reads through memory mapping.
+ * <p>
+ * Layout of the binary file (big-endian):
+ * <pre>
+ * header:  magic (int), version (int), id count (int), entry count (int), point count (long), ids size in bytes (int)
+ * ids:     every object id, as written by {@link DataOutputStream#writeUTF(String)}
+ * entries: id index (int), time (int), first point (long), point count (int), sorted by id index then time
+ * x, y, z: one column of doubles per coordinate, point count values each
+ * </pre>
+ * The points of an entry are contiguous in the columns, starting at its first point.
+ */
+public final class LiDarColumnarFormat {
+    static final int MAGIC = 0x4C445231; // "LDR1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 4;
+    static final int ENTRY_BYTES = 4 + 4 + 8 + 4;
+
+    private LiDarColumnarFormat() {
+    }
+
+    /**
+     * Converts a LiDAR data JSON file into the columnar binary format.
+     * The JSON file is streamed: only the entry index is held in memory, the
+     * points go straight to temporary column files.
+     *
+     * @param jsonPath   The path of the LiDAR data JSON file.
+     * @param binaryPath The path of the binary file to write.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void convert(String jsonPath, String binaryPath) throws IOException {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        List<long[]> entries = new ArrayList<>(); // {id index, time, first point, point count}
+        long pointCount = 0;
+        File[] columns = new File[3];
+        try {
+            DataOutputStream[] columnOutputs = new DataOutputStream[3];
+            try {
+                for (int c = 0; c < 3; c++) {
+                    columns[c] = File.createTempFile("lidar-column-" + c, ".bin");
+                    columnOutputs[c] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columns[c])));
+                }
+                try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(jsonPath), StandardCharsets.UTF_8))) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        long[] entry = readEntry(reader, ids, columnOutputs, pointCount);
+                        pointCount += entry[3];
+                        entries.add(entry);
+                    }
+                    reader.endArray();
+                }
+            } finally {
+                for (DataOutputStream output : columnOutputs) {
+                    if (output != null) {
+                        output.close();
+                    }
+                }
+            }
+            entries.sort(Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]));
+            removeDuplicates(entries);
+            write(binaryPath, ids, entries, pointCount, columns);
+        } finally {
+            for (File column : columns) {
+                if (column != null) {
+                    Files.deleteIfExists(column.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a file is in the columnar binary format, by its first bytes.
+     *
+     * @param filePath The path of the file.
+     * @return true if the file starts like a columnar LiDAR data file.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean isColumnar(String filePath) throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(filePath))) {
+            return input.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false; // Shorter than the magic number
+        }
+    }
+
+    /**
+     * Converts the LiDAR data JSON file given as first argument into the binary file given as second argument.
+     *
+     * @param args The JSON file path and the binary file path.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Expecting two arguments: the LiDAR JSON file and the binary file to write");
+        }
+        convert(args[0], args[1]);
+    }
+
+    // Reads one {"time", "id", "cloudPoints"} entry, appending its points to the columns
+    private static long[] readEntry(JsonReader reader, Map<String, Integer> ids, DataOutputStream[] columns, long firstPoint) throws IOException {
+        String id = null;
+        int time = 0;
+        long points = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("id")) {
+                id = reader.nextString();
+            } else if (name.equals("time")) {
+                time = reader.nextInt();
+            } else if (name.equals("cloudPoints")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    reader.beginArray();
+                    for (int c = 0; c < 3; c++) {
+                        // A point without z gets z = 0
+                        columns[c].writeDouble(reader.hasNext() ? reader.nextDouble() : 0);
+                    }
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                    points++;
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (id == null) {
+            throw new IOException("LiDAR entry without id at time " + time);
+        }
+        Integer idIndex = ids.get(id);
+        if (idIndex == null) {
+            idIndex = ids.size();
+            ids.put(id, idIndex);
+        }
+        return new long[]{idIndex, time, firstPoint, points};
+    }
+
+    // Keeps only the first entry of every (id, time) pair, like the JSON loading does. The sort is stable
+    private static void removeDuplicates(List<long[]> entries) {
+        int kept = 0;
+        for (long[] entry : entries) {
+            if (kept == 0 || entry[0] != entries.get(kept - 1)[0] || entry[1] != entries.get(kept - 1)[1]) {
+                entries.set(kept++, entry);
+            }
+        }
+        entries.subList(kept, entries.size()).clear();
+    }
+
+    private static void write(String binaryPath, Map<String, Integer> ids, List<long[]> entries, long pointCount, File[] columns) throws IOException {
+        ByteArrayOutputStream idBytes = new ByteArrayOutputStream();
+        try (DataOutputStream idOutput = new DataOutputStream(idBytes)) {
+            for (String id : ids.keySet()) {
+                idOutput.writeUTF(id);
+            }
+        }
+        try (FileOutputStream file = new FileOutputStream(binaryPath);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(ids.size());
+            output.writeInt(entries.size());
+            output.writeLong(pointCount);
+            output.writeInt(idBytes.size());
+            idBytes.writeTo(output);
+            for (long[] entry : entries) {
+                output.writeInt((int) entry[0]);
+                output.writeInt((int) entry[1]);
+                output.writeLong(entry[2]);
+                output.writeInt((int) entry[3]);
+            }
+            for (File column : columns) {
+                Files.copy(column.toPath(), output);
+            }
+        }
+    }
+}
@@ -1,26 +1,48 @@
 package bgu.spl.mics.application.objects;
 
-import java.util.List;
+import com.google.gson.stream.JsonReader;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * LiDarDataBase is a singleton class responsible for managing LiDAR data.
  * It provides access to cloud point data and other relevant information for tracked objects.
+ * <p>
+ * The data file is either the LiDAR JSON file, loaded into memory, or a columnar
+ * binary file written by {@link LiDarColumnarFormat}, read through memory mapping.
  */
 public class LiDarDataBase {
-    private List<StampedCloudPoints> cloudPoints; // The coordinates for every object per time
     private final String filePath;
+    // The coordinates for every object by object id, then by time, so a worker finds the points of a detection in O(1)
+    private final Map<String, Map<Integer, StampedCloudPoints>> cloudPointsByIdAndTime;
+    // The mapped data when the file is in the columnar binary format, null for a JSON file
+    private MappedLiDarData mappedData;
 
     private LiDarDataBase(String filePath) {
         this.filePath = filePath;
+        this.cloudPointsByIdAndTime = new HashMap<>();
+        this.mappedData = null;
     }
 
     private static class LidarDataBaseHolder {
         private static LiDarDataBase INSTANCE;
     }
 
+    /**
+     * Creates the singleton instance and loads the LiDAR data file into it.
+     *
+     * @param filePath The path to the LiDAR data file.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
     public static synchronized void initialize(String filePath) {
         if (LidarDataBaseHolder.INSTANCE == null) {
-            LidarDataBaseHolder.INSTANCE = new LiDarDataBase(filePath);
+            LidarDataBaseHolder.INSTANCE = loadFrom(filePath);
         } else {
             throw new IllegalStateException("Instance already initialized");
         }
@@ -32,9 +54,107 @@ public class LiDarDataBase {
      * @return The singleton instance of LiDarDataBase.
      */
     public static LiDarDataBase getInstance(String filePath) {
+        return getInstance();
+    }
+
+    /**
+     * Returns the singleton instance of LiDarDataBase.
+     *
+     * @return The singleton instance of LiDarDataBase.
+     */
+    public static synchronized LiDarDataBase getInstance() {
         if (LidarDataBaseHolder.INSTANCE == null) {
             throw new IllegalStateException("Singleton not initialized. Call initialize() first.");
         }
         return LidarDataBaseHolder.INSTANCE;
     }
+
+    /**
+     * Gets the cloud points of an object at the time it was detected.
+     *
+     * @param id   The ID of the object.
+     * @param time The time the object was detected.
+     * @return The stamped cloud points, or null if the LiDAR has no points for this object at this time.
+     */
+    public StampedCloudPoints getCloudPoints(String id, int time) {
+        if (mappedData != null) {
+            return mappedData.getCloudPoints(id, time);
+        }
+        Map<Integer, StampedCloudPoints> byTime = cloudPointsByIdAndTime.get(id);
+        return byTime == null ? null : byTime.get(time);
+    }
+
+    /**
+     * Gets the path of the LiDAR data file.
+     *
+     * @return The file path.
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    // Creates a data base loaded from the file without making it the singleton, so the tests can load several files
+    static LiDarDataBase loadFrom(String filePath) {
+        LiDarDataBase dataBase = new LiDarDataBase(filePath);
+        dataBase.load();
+        return dataBase;
+    }
+
+    // Maps a columnar file, or reads the whole JSON file into the index.
+    // The first entry of an (id, time) pair wins
+    private void load() {
+        try {
+            if (LiDarColumnarFormat.isColumnar(filePath)) {
+                mappedData = new MappedLiDarData(filePath);
+                return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed loading the LiDAR data from " + filePath, e);
+        }
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                StampedCloudPoints stampedCloudPoints = readEntry(reader);
+                cloudPointsByIdAndTime
+                        .computeIfAbsent(stampedCloudPoints.getId(), id -> new HashMap<>())
+                        .putIfAbsent(stampedCloudPoints.getTimestamp(), stampedCloudPoints);
+            }
+            reader.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed loading the LiDAR data from " + filePath, e);
+        }
+    }
+
+    // Reads one {"time", "id", "cloudPoints"} entry, the z coordinate of the points is not kept
+    private static StampedCloudPoints readEntry(JsonReader reader) throws IOException {
+        String id = null;
+        int time = 0;
+        PointCloud.Builder points = new PointCloud.Builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("id")) {
+                id = reader.nextString();
+            } else if (name.equals("time")) {
+                time = reader.nextInt();
+            } else if (name.equals("cloudPoints")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    reader.beginArray();
+                    double x = reader.nextDouble();
+                    double y = reader.nextDouble();
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                    points.add(x, y);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new StampedCloudPoints(id, time, points.build());
+    }
 }
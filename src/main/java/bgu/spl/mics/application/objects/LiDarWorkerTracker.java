@@ -2,6 +2,8 @@ package bgu.spl.mics.application.objects;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 /**
  * Represents a LiDAR tracker worker responsible for tracking objects and managing LiDAR data.
@@ -12,6 +14,10 @@ public class LiDarWorkerTracker {
     private final int frequency; // Time interval at which the LiDar sends new events
     private STATUS status;
     private List<TrackedObject> lastTrackedObjects;
+    // Tracked objects waiting to be reported, bucketed by the tick they become due, in tick order
+    private final NavigableMap<Integer, List<TrackedObject>> pendingByTick;
+    private int pendingCount;
+    private int lastReleasedTick; // Every bucket up to this tick was already released
 
     /**
      * Constructor for LiDarTrackerWorker.
@@ -24,33 +30,81 @@ public class LiDarWorkerTracker {
         this.frequency = frequency;
         this.status = STATUS.UP;
         this.lastTrackedObjects = new ArrayList<>();
+        this.pendingByTick = new TreeMap<>();
+        this.pendingCount = 0;
+        this.lastReleasedTick = 0;
     }
 
     /**
-     * Processes a DetectObjectsEvent by retrieving cloud points and creating tracked objects.
+     * Tracks objects detected by a camera, using the singleton LiDAR database, and keeps
+     * them pending until the worker may report them, {@code frequency} ticks after their detection.
+     * Objects that are already due are reported at the next released tick.
      *
      * @param detectedObjects The list of detected objects from the camera.
-     * @param lidarDatabase   The LiDAR database containing cloud points.
-     * @return A list of tracked objects created from the detected objects.
+     * @param detectionTime   The time the camera detected the objects.
+     * @return The tick the objects are due, or -1 if none of them was tracked.
      */
-    public List<TrackedObject> processDetectObjectsEvent(List<DetectedObject> detectedObjects, LiDarDataBase lidarDatabase) {
+    public int addPendingDetections(List<DetectedObject> detectedObjects, int detectionTime) {
+        List<TrackedObject> trackedObjects = track(detectedObjects, detectionTime, LiDarDataBase.getInstance());
+        if (trackedObjects.isEmpty()) {
+            return -1;
+        }
+        int dueTick = Math.max(detectionTime + frequency, lastReleasedTick + 1);
+        pendingByTick.computeIfAbsent(dueTick, t -> new ArrayList<>()).addAll(trackedObjects);
+        pendingCount += trackedObjects.size();
+        return dueTick;
+    }
+
+    /**
+     * Releases the pending tracked objects that are due at or before {@code tick}.
+     * Only the due buckets are visited, after a search logarithmic in the number of
+     * pending buckets, so the work does not grow with the ticks since the last release.
+     *
+     * @param tick The current tick of the system.
+     * @return The released tracked objects, by due tick and then in the order they were added, possibly empty.
+     */
+    public List<TrackedObject> releaseDue(int tick) {
+        List<TrackedObject> released = new ArrayList<>();
+        NavigableMap<Integer, List<TrackedObject>> due = pendingByTick.headMap(tick, true);
+        for (List<TrackedObject> bucket : due.values()) {
+            released.addAll(bucket);
+        }
+        due.clear();
+        pendingCount -= released.size();
+        lastReleasedTick = Math.max(lastReleasedTick, tick);
+        if (!released.isEmpty()) {
+            lastTrackedObjects = released;
+        }
+        return released;
+    }
+
+    /**
+     * Gets the number of tracked objects waiting to be reported.
+     *
+     * @return The number of pending tracked objects.
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    // Creates a tracked object for every detected object the LiDAR has points for
+    private static List<TrackedObject> track(List<DetectedObject> detectedObjects, int detectionTime, LiDarDataBase lidarDatabase) {
         List<TrackedObject> trackedObjects = new ArrayList<>();
 
         for (DetectedObject detectedObject : detectedObjects) {
-            StampedCloudPoints cloudPoints = lidarDatabase.getCloudPoints(detectedObject.getId());
+            // The points the LiDAR measured for this object at the time the camera detected it
+            StampedCloudPoints cloudPoints = lidarDatabase.getCloudPoints(detectedObject.getId(), detectionTime);
 
             if (cloudPoints != null) {
                 TrackedObject trackedObject = new TrackedObject(
                         detectedObject.getId(),
                         cloudPoints.getTimestamp(),
                         detectedObject.getDescription(),
-                        cloudPoints.getCloudPoints()
+                        cloudPoints.getPointCloud()
                 );
                 trackedObjects.add(trackedObject);
             }
         }
-
-        lastTrackedObjects = trackedObjects;
         return trackedObjects;
     }
 
@@ -0,0 +1,157 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LiDAR data read from a columnar binary file (see {@link LiDarColumnarFormat})
+ * through memory mapping. Opening the file only reads the object ids, the
+ * entries and the points stay off-heap in the mapped file and are read on demand.
+ * <p>
+ * Each column is mapped on its own, so a column may hold up to 2GB of doubles.
+ */
+public class MappedLiDarData {
+    private final Map<String, int[]> entriesById; // For each object id: {first entry, entry count}
+    private final ByteBuffer entries;
+    private final DoubleBuffer xs;
+    private final DoubleBuffer ys;
+    private final DoubleBuffer zs;
+
+    /**
+     * Constructor for MappedLiDarData.
+     * Maps the file into memory and reads its object ids.
+     *
+     * @param filePath The path of the binary LiDAR data file.
+     * @throws IOException if the file cannot be read or is not in the columnar format.
+     */
+    public MappedLiDarData(String filePath) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r");
+             FileChannel channel = file.getChannel()) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, LiDarColumnarFormat.HEADER_BYTES);
+            if (header.getInt() != LiDarColumnarFormat.MAGIC || header.getInt() != LiDarColumnarFormat.VERSION) {
+                throw new IOException(filePath + " is not a columnar LiDAR data file");
+            }
+            int idCount = header.getInt();
+            int entryCount = header.getInt();
+            long pointCount = header.getLong();
+            int idBytes = header.getInt();
+
+            long position = LiDarColumnarFormat.HEADER_BYTES;
+            String[] ids = readIds(channel.map(FileChannel.MapMode.READ_ONLY, position, idBytes), idCount);
+            position += idBytes;
+            long entryBytes = (long) entryCount * LiDarColumnarFormat.ENTRY_BYTES;
+            this.entries = channel.map(FileChannel.MapMode.READ_ONLY, position, entryBytes);
+            this.entriesById = indexEntries(ids, entries, entryCount);
+            position += entryBytes;
+            long columnBytes = pointCount * Double.BYTES;
+            this.xs = channel.map(FileChannel.MapMode.READ_ONLY, position, columnBytes).asDoubleBuffer();
+            this.ys = channel.map(FileChannel.MapMode.READ_ONLY, position + columnBytes, columnBytes).asDoubleBuffer();
+            this.zs = channel.map(FileChannel.MapMode.READ_ONLY, position + 2 * columnBytes, columnBytes).asDoubleBuffer();
+            // The mappings stay valid after the channel is closed
+        }
+    }
+
+    /**
+     * Gets the cloud points of an object at the time it was detected.
+     * Looking up the entry takes O(log k) for an object with k entries.
+     *
+     * @param id   The ID of the object.
+     * @param time The time the object was detected.
+     * @return The stamped cloud points, or null if there are no points for this object at this time.
+     */
+    public StampedCloudPoints getCloudPoints(String id, int time) {
+        int entry = findEntry(id, time);
+        if (entry < 0) {
+            return null;
+        }
+        int base = entry * LiDarColumnarFormat.ENTRY_BYTES;
+        int first = (int) entries.getLong(base + 8);
+        int count = entries.getInt(base + 16);
+        double[] coordinates = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            coordinates[i * 2] = xs.get(first + i);
+            coordinates[i * 2 + 1] = ys.get(first + i);
+        }
+        return new StampedCloudPoints(id, time, PointCloud.wrap(coordinates));
+    }
+
+    /**
+     * Gets the z coordinate of a point, which {@link CloudPoint} does not keep.
+     *
+     * @param id    The ID of the object.
+     * @param time  The time the object was detected.
+     * @param point The index of the point among the points of the object at this time.
+     * @return The z coordinate of the point.
+     * @throws IllegalArgumentException if there is no such point.
+     */
+    public double getZ(String id, int time, int point) {
+        int entry = findEntry(id, time);
+        if (entry < 0) {
+            throw new IllegalArgumentException("No points for " + id + " at time " + time);
+        }
+        int base = entry * LiDarColumnarFormat.ENTRY_BYTES;
+        if (point < 0 || point >= entries.getInt(base + 16)) {
+            throw new IllegalArgumentException("No point " + point + " for " + id + " at time " + time);
+        }
+        return zs.get((int) entries.getLong(base + 8) + point);
+    }
+
+    // Index of the entry of (id, time), or -1. The entries of an id are contiguous and sorted by time
+    private int findEntry(String id, int time) {
+        int[] range = entriesById.get(id);
+        if (range == null) {
+            return -1;
+        }
+        int low = range[0];
+        int high = range[0] + range[1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleTime = entries.getInt(middle * LiDarColumnarFormat.ENTRY_BYTES + 4);
+            if (middleTime < time) {
+                low = middle + 1;
+            } else if (middleTime > time) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // Finds the range of entries of every object id, the entries being sorted by id index
+    private static Map<String, int[]> indexEntries(String[] ids, ByteBuffer entries, int entryCount) {
+        Map<String, int[]> entriesById = new HashMap<>();
+        int first = 0;
+        for (int i = 1; i <= entryCount; i++) {
+            if (i == entryCount || idIndexAt(entries, i) != idIndexAt(entries, first)) {
+                entriesById.put(ids[idIndexAt(entries, first)], new int[]{first, i - first});
+                first = i;
+            }
+        }
+        return entriesById;
+    }
+
+    private static int idIndexAt(ByteBuffer entries, int entry) {
+        return entries.getInt(entry * LiDarColumnarFormat.ENTRY_BYTES);
+    }
+
+    private static String[] readIds(ByteBuffer buffer, int idCount) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        String[] ids = new String[idCount];
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            for (int i = 0; i < idCount; i++) {
+                ids[i] = input.readUTF();
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,344 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable group of 2D cloud points, stored as packed x, y pairs in a single
+ * {@code double[]} instead of one {@link CloudPoint} object per point.
+ * Transforming a cloud allocates one array, and reading it walks contiguous memory.
+ * <p>
+ * Callers that work with {@link CloudPoint}s get a list view with {@link #asList()}.
+ * In JSON a point cloud is written as a list of {"x", "y"} objects, like a {@code List<CloudPoint>}.
+ */
+@JsonAdapter(PointCloud.GsonAdapter.class)
+public final class PointCloud {
+    private static final PointCloud EMPTY = new PointCloud(new double[0], 0);
+
+    private final double[] coordinates; // x0, y0, x1, y1, ...
+    private final int size; // The number of points
+
+    private PointCloud(double[] coordinates, int size) {
+        this.coordinates = coordinates;
+        this.size = size;
+    }
+
+    /**
+     * @return A point cloud without points.
+     */
+    public static PointCloud empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a point cloud holding a copy of the given points.
+     *
+     * @param points The points.
+     * @return The point cloud.
+     */
+    public static PointCloud of(List<CloudPoint> points) {
+        double[] coordinates = new double[points.size() * 2];
+        int i = 0;
+        for (CloudPoint point : points) {
+            coordinates[i++] = point.getX();
+            coordinates[i++] = point.getY();
+        }
+        return new PointCloud(coordinates, points.size());
+    }
+
+    /**
+     * Creates a point cloud over packed coordinates. The array is not copied,
+     * so it must not be modified afterwards.
+     *
+     * @param coordinates The x, y pairs of the points.
+     * @return The point cloud.
+     * @throws IllegalArgumentException if the array does not hold whole pairs.
+     */
+    public static PointCloud wrap(double[] coordinates) {
+        if (coordinates.length % 2 != 0) {
+            throw new IllegalArgumentException("Expecting x, y pairs, instead received " + coordinates.length + " coordinates");
+        }
+        return new PointCloud(coordinates, coordinates.length / 2);
+    }
+
+    /**
+     * @return The number of points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the point.
+     * @return The x-coordinate of the point.
+     */
+    public double getX(int index) {
+        checkIndex(index);
+        return coordinates[index * 2];
+    }
+
+    /**
+     * @param index The index of the point.
+     * @return The y-coordinate of the point.
+     */
+    public double getY(int index) {
+        checkIndex(index);
+        return coordinates[index * 2 + 1];
+    }
+
+    /**
+     * Copies the packed coordinates into {@code destination}.
+     *
+     * @param destination The array to copy into, holding at least {@code 2 * size()} values.
+     * @param offset      The index in {@code destination} of the first x-coordinate.
+     */
+    public void copyTo(double[] destination, int offset) {
+        System.arraycopy(coordinates, 0, destination, offset, size * 2);
+    }
+
+    /**
+     * Transforms the points from the robot's frame to the charging station's frame,
+     * rotating them by the yaw of {@code pose} and then translating them by its position.
+     *
+     * @param pose The pose of the robot when the points were measured.
+     * @return The transformed point cloud.
+     */
+    public PointCloud transform(Pose pose) {
+        double yaw = Math.toRadians(pose.getYaw());
+        return transform(Math.cos(yaw), Math.sin(yaw), pose.getX(), pose.getY());
+    }
+
+    // The rotation and translation already worked out, so a pose shared by many clouds costs one sin and cos
+    PointCloud transform(double cos, double sin, double dx, double dy) {
+        double[] transformed = new double[size * 2];
+        for (int i = 0; i < size * 2; i += 2) {
+            double x = coordinates[i];
+            double y = coordinates[i + 1];
+            transformed[i] = cos * x - sin * y + dx;
+            transformed[i + 1] = sin * x + cos * y + dy;
+        }
+        return new PointCloud(transformed, size);
+    }
+
+    /**
+     * Averages this point cloud with a new observation of the same object, point by point.
+     * Points that only the new observation has are kept as they are.
+     *
+     * @param observation The new observation, in the same frame as this point cloud.
+     * @return The averaged point cloud.
+     */
+    public PointCloud averageWith(PointCloud observation) {
+        int common = Math.min(size, observation.size) * 2;
+        double[] averaged = new double[Math.max(size, observation.size) * 2];
+        for (int i = 0; i < common; i++) {
+            averaged[i] = (coordinates[i] + observation.coordinates[i]) / 2;
+        }
+        PointCloud longer = size >= observation.size ? this : observation;
+        System.arraycopy(longer.coordinates, common, averaged, common, averaged.length - common);
+        return new PointCloud(averaged, averaged.length / 2);
+    }
+
+    /**
+     * @param x      The x-coordinate of the center.
+     * @param y      The y-coordinate of the center.
+     * @param radius The radius.
+     * @return true if at least one point is within {@code radius} of (x, y).
+     */
+    public boolean anyWithin(double x, double y, double radius) {
+        double radiusSquared = radius * radius;
+        for (int i = 0; i < size * 2; i += 2) {
+            double dx = coordinates[i] - x;
+            double dy = coordinates[i + 1] - y;
+            if (dx * dx + dy * dy <= radiusSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param minX The lowest x-coordinate of the box.
+     * @param minY The lowest y-coordinate of the box.
+     * @param maxX The highest x-coordinate of the box.
+     * @param maxY The highest y-coordinate of the box.
+     * @return true if at least one point is inside the box, borders included.
+     */
+    public boolean anyInside(double minX, double minY, double maxX, double maxY) {
+        for (int i = 0; i < size * 2; i += 2) {
+            double x = coordinates[i];
+            double y = coordinates[i + 1];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a read-only list view of the points. Each access creates a {@link CloudPoint}.
+     *
+     * @return The points as a list.
+     */
+    public List<CloudPoint> asList() {
+        return new CloudPointList();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PointCloud)) {
+            return false;
+        }
+        PointCloud other = (PointCloud) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size * 2; i++) {
+            if (Double.compare(coordinates[i], other.coordinates[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size * 2; i++) {
+            long bits = Double.doubleToLongBits(coordinates[i]);
+            hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    // The points viewed as CloudPoints
+    private final class CloudPointList extends AbstractList<CloudPoint> implements RandomAccess {
+        @Override
+        public CloudPoint get(int index) {
+            return new CloudPoint(getX(index), getY(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Builds a point cloud one point at a time, growing a single packed array.
+     */
+    public static final class Builder {
+        private double[] coordinates;
+        private int size = 0;
+
+        /**
+         * Constructor for Builder.
+         */
+        public Builder() {
+            this(8);
+        }
+
+        /**
+         * Constructor for Builder.
+         *
+         * @param expectedPoints The number of points expected, used to size the array.
+         */
+        public Builder(int expectedPoints) {
+            this.coordinates = new double[Math.max(expectedPoints, 1) * 2];
+        }
+
+        /**
+         * Appends a point.
+         *
+         * @param x The x-coordinate of the point.
+         * @param y The y-coordinate of the point.
+         * @return This builder.
+         */
+        public Builder add(double x, double y) {
+            if (size * 2 == coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+            }
+            coordinates[size * 2] = x;
+            coordinates[size * 2 + 1] = y;
+            size++;
+            return this;
+        }
+
+        /**
+         * Creates the point cloud. The builder must not be used afterwards.
+         *
+         * @return The point cloud.
+         */
+        public PointCloud build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new PointCloud(size * 2 == coordinates.length ? coordinates : Arrays.copyOf(coordinates, size * 2), size);
+        }
+    }
+
+    // Reads and writes a point cloud as [{"x": ..., "y": ...}, ...]
+    static final class GsonAdapter extends TypeAdapter<PointCloud> {
+        @Override
+        public void write(JsonWriter out, PointCloud cloud) throws IOException {
+            if (cloud == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginArray();
+            for (int i = 0; i < cloud.size; i++) {
+                out.beginObject();
+                out.name("x").value(cloud.coordinates[i * 2]);
+                out.name("y").value(cloud.coordinates[i * 2 + 1]);
+                out.endObject();
+            }
+            out.endArray();
+        }
+
+        @Override
+        public PointCloud read(JsonReader in) throws IOException {
+            Builder builder = new Builder();
+            in.beginArray();
+            while (in.hasNext()) {
+                double x = 0;
+                double y = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (name.equals("x")) {
+                        x = in.nextDouble();
+                    } else if (name.equals("y")) {
+                        y = in.nextDouble();
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                builder.add(x, y);
+            }
+            in.endArray();
+            return builder.build();
+        }
+    }
+}
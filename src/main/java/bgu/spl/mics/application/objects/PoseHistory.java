@@ -0,0 +1,201 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The time-stamped poses of the robot, kept sorted by timestamp in parallel
+ * primitive arrays so finding the pose at a given time needs no scan.
+ * <p>
+ * When the timestamps are consecutive ticks, as when a pose is recorded every tick,
+ * a lookup is O(1). Otherwise it is a binary search, O(log n).
+ * Poses between two timestamps can be interpolated, linearly for the position
+ * and along the shortest arc for the yaw.
+ */
+public class PoseHistory {
+    private int[] timestamps;
+    private float[] xs;
+    private float[] ys;
+    private float[] yaws;
+    private int size;
+
+    /**
+     * Constructor for PoseHistory.
+     * Creates an empty history.
+     */
+    public PoseHistory() {
+        this.timestamps = new int[16];
+        this.xs = new float[16];
+        this.ys = new float[16];
+        this.yaws = new float[16];
+        this.size = 0;
+    }
+
+    /**
+     * Constructor for PoseHistory.
+     *
+     * @param poses The poses to start with, in any order.
+     */
+    public PoseHistory(List<Pose> poses) {
+        this();
+        for (Pose pose : poses) {
+            add(pose);
+        }
+    }
+
+    /**
+     * Adds a pose. Appending in timestamp order takes amortized O(1).
+     * A pose with the timestamp of an existing pose replaces it.
+     *
+     * @param pose The pose to add.
+     */
+    public synchronized void add(Pose pose) {
+        int time = pose.getTimestamp();
+        int index;
+        if (size == 0 || timestamps[size - 1] < time) {
+            index = size;
+        } else {
+            index = indexOf(time);
+            if (index >= 0) {
+                set(index, pose);
+                return;
+            }
+            index = -index - 1;
+        }
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            yaws = Arrays.copyOf(yaws, capacity);
+        }
+        if (index < size) {
+            // Out of order, shift the later poses
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            System.arraycopy(xs, index, xs, index + 1, size - index);
+            System.arraycopy(ys, index, ys, index + 1, size - index);
+            System.arraycopy(yaws, index, yaws, index + 1, size - index);
+        }
+        timestamps[index] = time;
+        set(index, pose);
+        size++;
+    }
+
+    /**
+     * Gets the pose recorded at a time.
+     *
+     * @param time The timestamp.
+     * @return The pose, or null if no pose was recorded at this time.
+     */
+    public synchronized Pose getPose(int time) {
+        int index = indexOf(time);
+        return index < 0 ? null : poseAt(index);
+    }
+
+    /**
+     * Gets the pose at a time, interpolating between the poses recorded before and after it.
+     * The position is interpolated linearly, and the yaw along the shortest arc between the two angles.
+     *
+     * @param time The time, possibly between two timestamps.
+     * @return The pose with the timestamp rounded down, or null if the time is outside the recorded range.
+     */
+    public synchronized Pose interpolate(double time) {
+        if (size == 0 || time < timestamps[0] || time > timestamps[size - 1]) {
+            return null;
+        }
+        int index = indexOf((int) Math.floor(time));
+        if (index >= 0 && time == timestamps[index]) {
+            return poseAt(index);
+        }
+        // The insertion point of floor(time) is the first pose after time, unless floor(time) itself was recorded
+        int after = index >= 0 ? index + 1 : -index - 1;
+        int before = after - 1;
+        double fraction = (time - timestamps[before]) / (timestamps[after] - timestamps[before]);
+        double yawDelta = normalizeDegrees(yaws[after] - yaws[before]);
+        return new Pose(
+                (float) (xs[before] + (xs[after] - xs[before]) * fraction),
+                (float) (ys[before] + (ys[after] - ys[before]) * fraction),
+                (float) normalizeDegrees(yaws[before] + yawDelta * fraction),
+                (int) Math.floor(time));
+    }
+
+    /**
+     * Gets the latest pose.
+     *
+     * @return The pose with the highest timestamp, or null if the history is empty.
+     */
+    public synchronized Pose getLatest() {
+        return size == 0 ? null : poseAt(size - 1);
+    }
+
+    /**
+     * @return The number of recorded poses.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets a read-only list view of the poses, sorted by timestamp.
+     * Each access creates a {@link Pose}.
+     *
+     * @return The poses as a list.
+     */
+    public List<Pose> asList() {
+        return new PoseList();
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+
+    // Index of the pose at time, or (-(insertion point) - 1) like Arrays.binarySearch
+    private int indexOf(int time) {
+        if (size == 0) {
+            return -1;
+        }
+        // Consecutive timestamps put the pose of a time at a fixed offset from the first one
+        long guess = (long) time - timestamps[0];
+        if (guess >= 0 && guess < size && timestamps[(int) guess] == time) {
+            return (int) guess;
+        }
+        return Arrays.binarySearch(timestamps, 0, size, time);
+    }
+
+    private void set(int index, Pose pose) {
+        xs[index] = pose.getX();
+        ys[index] = pose.getY();
+        yaws[index] = pose.getYaw();
+    }
+
+    private Pose poseAt(int index) {
+        return new Pose(xs[index], ys[index], yaws[index], timestamps[index]);
+    }
+
+    // Brings an angle in degrees into [-180, 180)
+    private static double normalizeDegrees(double degrees) {
+        double normalized = (degrees + 180) % 360;
+        return (normalized < 0 ? normalized + 360 : normalized) - 180;
+    }
+
+    // The poses viewed as Pose objects
+    private final class PoseList extends AbstractList<Pose> implements RandomAccess {
+        @Override
+        public Pose get(int index) {
+            synchronized (PoseHistory.this) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return poseAt(index);
+            }
+        }
+
+        @Override
+        public int size() {
+            return PoseHistory.this.size();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+/**
+ * Transforms the coordinates of tracked objects from the robot's frame to the charging station's frame,
+ * using the pose of the robot at the time each object was tracked.
+ * <p>
+ * The sine and cosine of a pose's yaw are worked out once per batch, however many objects share the pose,
+ * and then each object is transformed by a single loop over its packed coordinates.
+ * A batch with more points than the parallel threshold is split across a fork-join pool.
+ */
+public class PoseTransformer {
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16; // Points, below it splitting costs more than it saves
+
+    private final ForkJoinPool pool; // null to always transform on the calling thread
+    private final int parallelThreshold;
+
+    /**
+     * Constructor for PoseTransformer.
+     * Splits batches of more than 65536 points across the common fork-join pool.
+     */
+    public PoseTransformer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Constructor for PoseTransformer.
+     *
+     * @param pool              The pool large batches are split across, or null to never split them.
+     * @param parallelThreshold The number of points above which a batch is split.
+     */
+    public PoseTransformer(ForkJoinPool pool, int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Parallel threshold must be at least 1, instead received: " + parallelThreshold);
+        }
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Transforms the coordinates of tracked objects to the charging station's frame.
+     *
+     * @param trackedObjects The tracked objects, in the robot's frame.
+     * @param poses          Gives the pose of the robot at a time, or null if there is none.
+     * @return The transformed coordinates, at the index of their object,
+     *         null for the objects tracked at a time with no pose.
+     */
+    public PointCloud[] transform(List<TrackedObject> trackedObjects, IntFunction<Pose> poses) {
+        int count = trackedObjects.size();
+        TrackedObject[] objects = trackedObjects.toArray(new TrackedObject[0]);
+        double[] coefficients = new double[count * 4]; // cos, sin, dx, dy of the pose of each object, NaN for no pose
+        long[] pointsBefore = new long[count + 1]; // The number of points of the objects before each one
+        Map<Long, Integer> firstAtTime = new HashMap<>(); // Objects tracked at the same time share their first one's coefficients
+
+        for (int i = 0; i < count; i++) {
+            long time = objects[i].getTimestamp();
+            Integer first = i > 0 && objects[i - 1].getTimestamp() == time ? Integer.valueOf(i - 1) : firstAtTime.putIfAbsent(time, i);
+            if (first != null) {
+                System.arraycopy(coefficients, first * 4, coefficients, i * 4, 4);
+            } else {
+                Pose pose = time == (int) time ? poses.apply((int) time) : null;
+                setCoefficients(coefficients, i, pose);
+            }
+            pointsBefore[i + 1] = pointsBefore[i] + objects[i].getPointCloud().size();
+        }
+
+        PointCloud[] transformed = new PointCloud[count];
+        if (pool != null && pointsBefore[count] > parallelThreshold) {
+            pool.invoke(new TransformTask(objects, coefficients, pointsBefore, transformed, 0, count));
+        } else {
+            transformRange(objects, coefficients, transformed, 0, count);
+        }
+        return transformed;
+    }
+
+    private static void setCoefficients(double[] coefficients, int index, Pose pose) {
+        if (pose == null) {
+            coefficients[index * 4] = Double.NaN;
+            return;
+        }
+        double yaw = Math.toRadians(pose.getYaw());
+        coefficients[index * 4] = Math.cos(yaw);
+        coefficients[index * 4 + 1] = Math.sin(yaw);
+        coefficients[index * 4 + 2] = pose.getX();
+        coefficients[index * 4 + 3] = pose.getY();
+    }
+
+    private static void transformRange(TrackedObject[] objects, double[] coefficients, PointCloud[] transformed, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double cos = coefficients[i * 4];
+            if (!Double.isNaN(cos)) {
+                transformed[i] = objects[i].getPointCloud().transform(
+                        cos, coefficients[i * 4 + 1], coefficients[i * 4 + 2], coefficients[i * 4 + 3]);
+            }
+        }
+    }
+
+    // Transforms a range of objects, halving it by number of points until it is under the threshold
+    private final class TransformTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TrackedObject[] objects;
+        private final double[] coefficients;
+        private final long[] pointsBefore;
+        private final PointCloud[] transformed;
+        private final int from;
+        private final int to;
+
+        TransformTask(TrackedObject[] objects, double[] coefficients, long[] pointsBefore, PointCloud[] transformed, int from, int to) {
+            this.objects = objects;
+            this.coefficients = coefficients;
+            this.pointsBefore = pointsBefore;
+            this.transformed = transformed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 || pointsBefore[to] - pointsBefore[from] <= parallelThreshold) {
+                transformRange(objects, coefficients, transformed, from, to);
+                return;
+            }
+            // The first object whose points start past the middle point of the range
+            int middle = Arrays.binarySearch(pointsBefore, from, to, (pointsBefore[from] + pointsBefore[to]) / 2);
+            middle = Math.min(Math.max(middle < 0 ? -middle - 1 : middle, from + 1), to - 1);
+            invokeAll(new TransformTask(objects, coefficients, pointsBefore, transformed, from, middle),
+                    new TransformTask(objects, coefficients, pointsBefore, transformed, middle, to));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Holds the tracked objects that reach the fusion before the pose of the robot at their time,
+ * indexed by timestamp, until that pose is recorded.
+ * <p>
+ * The buffer is bounded: when more than its capacity objects are parked, the oldest are expired.
+ * Objects also expire when their pose is late by more than the maximal skew, that is when a pose
+ * more than the maximal skew after their time is recorded while theirs is still missing.
+ */
+public class ReorderBuffer {
+    private final PoseHistory poses;
+    private final int capacity;
+    private final int maxSkew;
+    private final TreeMap<Long, List<TrackedObject>> parked; // Parked objects by timestamp
+    private int size; // The number of parked objects
+    private long parkedCount;
+    private long releasedCount;
+    private long expiredCount;
+
+    /**
+     * Constructor for ReorderBuffer.
+     *
+     * @param poses    The poses of the robot, checked under the buffer's lock before parking an object.
+     * @param capacity The maximal number of parked objects.
+     * @param maxSkew  The maximal number of ticks a pose may arrive after a later one.
+     */
+    public ReorderBuffer(PoseHistory poses, int capacity, int maxSkew) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative, instead received: " + capacity);
+        }
+        if (maxSkew < 0) {
+            throw new IllegalArgumentException("Maximal skew must not be negative, instead received: " + maxSkew);
+        }
+        this.poses = poses;
+        this.capacity = capacity;
+        this.maxSkew = maxSkew;
+        this.parked = new TreeMap<>();
+        this.size = 0;
+    }
+
+    /**
+     * Parks the objects whose pose is still missing.
+     * Since a pose recorded meanwhile is seen here, an object is never parked after its pose was released.
+     *
+     * @param trackedObjects The objects found without a pose.
+     * @return The objects whose pose was recorded meanwhile, to process now.
+     */
+    public synchronized List<TrackedObject> park(List<TrackedObject> trackedObjects) {
+        List<TrackedObject> ready = new ArrayList<>();
+        Pose latest = poses.getLatest();
+        for (TrackedObject trackedObject : trackedObjects) {
+            long time = trackedObject.getTimestamp();
+            if (time == (int) time && poses.getPose((int) time) != null) {
+                ready.add(trackedObject);
+            } else if (latest != null && latest.getTimestamp() - time > maxSkew) {
+                expiredCount++; // Its pose is too late already
+            } else {
+                parked.computeIfAbsent(time, key -> new ArrayList<>()).add(trackedObject);
+                size++;
+                parkedCount++;
+            }
+        }
+        // Over capacity, the oldest objects are the least likely to still get their pose
+        while (size > capacity) {
+            Map.Entry<Long, List<TrackedObject>> oldest = parked.firstEntry();
+            List<TrackedObject> objects = oldest.getValue();
+            objects.remove(objects.size() - 1);
+            if (objects.isEmpty()) {
+                parked.remove(oldest.getKey());
+            }
+            size--;
+            expiredCount++;
+        }
+        return ready;
+    }
+
+    /**
+     * Releases the objects parked for a pose, to call after the pose is recorded.
+     * Also expires the objects whose pose is now late by more than the maximal skew.
+     *
+     * @param time The timestamp of the recorded pose.
+     * @return The objects tracked at this time, in the order they were parked.
+     */
+    public synchronized List<TrackedObject> release(int time) {
+        List<TrackedObject> released = parked.remove((long) time);
+        if (released != null) {
+            size -= released.size();
+            releasedCount += released.size();
+        }
+        Map<Long, List<TrackedObject>> expired = parked.headMap((long) time - maxSkew, false);
+        for (List<TrackedObject> objects : expired.values()) {
+            size -= objects.size();
+            expiredCount += objects.size();
+        }
+        expired.clear();
+        return released == null ? Collections.emptyList() : released;
+    }
+
+    /**
+     * @return The number of objects parked now.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of objects ever parked.
+     */
+    public synchronized long getParkedCount() {
+        return parkedCount;
+    }
+
+    /**
+     * @return The number of parked objects released once their pose was recorded.
+     */
+    public synchronized long getReleasedCount() {
+        return releasedCount;
+    }
+
+    /**
+     * @return The number of objects dropped because their pose was too late or the buffer was full.
+     */
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReorderBuffer{" +
+                "size=" + size +
+                ", parked=" + parkedCount +
+                ", released=" + releasedCount +
+                ", expired=" + expiredCount +
+                '}';
+    }
+}
@@ -9,21 +9,27 @@ import java.util.List;
 public class StampedCloudPoints {
     private final String id;
     private final int timestamp; // The time the object was detected
-    private final List<CloudPoint> cloudPoints;
+    private final PointCloud cloudPoints;
 
-    public StampedCloudPoints(String id, int timestamp, List<CloudPoint> cloudPoints) {
+    public StampedCloudPoints(String id, int timestamp, PointCloud cloudPoints) {
         this.id = id;
         this.timestamp = timestamp;
         this.cloudPoints = cloudPoints;
     }
 
+    public StampedCloudPoints(String id, int timestamp, List<CloudPoint> cloudPoints) {
+        this(id, timestamp, PointCloud.of(cloudPoints));
+    }
+
     public String getId() {
         return id;
     }
 
     public int getTimestamp() {return timestamp;}
 
-    public List<CloudPoint> getCloudPoints() {return cloudPoints;}
+    public List<CloudPoint> getCloudPoints() {return cloudPoints.asList();}
+
+    public PointCloud getPointCloud() {return cloudPoints;}
 
     @Override
     public String toString() {
@@ -0,0 +1,160 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Camera detections read lazily from a camera data file, as the ticks advance.
+ * <p>
+ * The file holds one array of {@code {"time", "detectedObjects"}} entries per camera key.
+ * The entries may also be nested in inner arrays, as in {@code "camera1": [[{...}, {...}]]},
+ * and are then read in order as if the inner arrays were flattened.
+ * Only the array of the requested camera key is read: the arrays of the other
+ * cameras are skipped without being parsed into objects, and entries are read one
+ * at a time when their tick is looked up, so memory stays bounded by a single
+ * entry of look-ahead no matter how long the recording is.
+ * <p>
+ * The entries of the camera must appear in increasing time order, and ticks must
+ * be looked up in increasing order; looking up a tick that was already passed
+ * finds no detections.
+ */
+public class StreamingCameraData implements CameraDataSource {
+    private final String cameraKey;
+    private final JsonReader reader;
+    private StampedDetectedObjects next; // The first entry read but not handed out yet, null if none
+    private boolean exhausted; // Whether all the entries of the camera were read
+    private int depth; // The number of inner arrays the reader is in, below the camera array
+
+    /**
+     * Constructor for StreamingCameraData.
+     * Opens the file and moves to the detections of {@code cameraKey}.
+     *
+     * @param filePath  The path to the camera data file.
+     * @param cameraKey The key of the camera in the file, e.g. "camera1".
+     * @throws IOException if the file cannot be read.
+     */
+    public StreamingCameraData(String filePath, String cameraKey) throws IOException {
+        this.cameraKey = cameraKey;
+        this.reader = new JsonReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8));
+        this.exhausted = true;
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(cameraKey)) {
+                    reader.beginArray();
+                    exhausted = false;
+                    return;
+                }
+                reader.skipValue();
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        // The camera has no recording in this file
+        reader.close();
+    }
+
+    @Override
+    public StampedDetectedObjects detectionsAt(int tick) {
+        try {
+            // Entries of ticks that were passed are dropped
+            while (next == null || next.getTimestamp() < tick) {
+                if (exhausted) {
+                    return null;
+                }
+                next = readEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed reading the detections of " + cameraKey, e);
+        }
+        if (next.getTimestamp() == tick) {
+            StampedDetectedObjects found = next;
+            next = null;
+            return found;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        exhausted = true;
+        reader.close();
+    }
+
+    // Reads the next entry of the camera array, or returns null and closes the file at the end of the array
+    private StampedDetectedObjects readEntry() throws IOException {
+        while (true) {
+            if (!reader.hasNext()) {
+                if (depth == 0) {
+                    close();
+                    return null;
+                }
+                reader.endArray();
+                depth--;
+            } else if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                depth++;
+            } else if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                return readStampedDetectedObjects();
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    private StampedDetectedObjects readStampedDetectedObjects() throws IOException {
+        int time = 0;
+        List<DetectedObject> detectedObjects = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("time")) {
+                time = reader.nextInt();
+            } else if (name.equals("detectedObjects") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    detectedObjects.add(readDetectedObject());
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new StampedDetectedObjects(time, detectedObjects);
+    }
+
+    private DetectedObject readDetectedObject() throws IOException {
+        String id = null;
+        String description = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("id")) {
+                id = reader.nextString();
+            } else if (name.equals("description")) {
+                description = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new DetectedObject(id, description);
+    }
+
+    @Override
+    public String toString() {
+        return "StreamingCameraData{" +
+                "cameraKey='" + cameraKey + '\'' +
+                '}';
+    }
+}
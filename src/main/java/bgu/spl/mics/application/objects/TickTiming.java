@@ -0,0 +1,95 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how closely the ticks of the TimeService follow their schedule.
+ * The lag of a tick is how late it was broadcast compared to its deadline,
+ * and the jitter of a tick is how much its lag differs from the lag of the previous tick.
+ */
+public class TickTiming {
+    private int ticks; // Number of measured ticks
+    private int skippedTicks; // Number of ticks the TimeService skipped to catch up
+    private long lastLagNanos;
+    private long totalLagNanos;
+    private long maxLagNanos;
+    private long totalJitterNanos;
+    private long maxJitterNanos;
+
+    /**
+     * Constructor for TickTiming.
+     * Initializes all measures to zero.
+     */
+    public TickTiming() {
+        this.ticks = 0;
+        this.skippedTicks = 0;
+        this.lastLagNanos = 0;
+        this.totalLagNanos = 0;
+        this.maxLagNanos = 0;
+        this.totalJitterNanos = 0;
+        this.maxJitterNanos = 0;
+    }
+
+    /**
+     * Records the lag of a tick.
+     *
+     * @param lagNanos How late the tick was, in nanoseconds.
+     */
+    public synchronized void recordTick(long lagNanos) {
+        long lag = Math.max(lagNanos, 0); // A tick is never early, but nanoTime rounding may say so
+        if (ticks > 0) {
+            long jitter = Math.abs(lag - lastLagNanos);
+            totalJitterNanos += jitter;
+            maxJitterNanos = Math.max(maxJitterNanos, jitter);
+        }
+        ticks++;
+        lastLagNanos = lag;
+        totalLagNanos += lag;
+        maxLagNanos = Math.max(maxLagNanos, lag);
+    }
+
+    /**
+     * Records ticks that were skipped to catch up with the schedule.
+     *
+     * @param count The number of skipped ticks.
+     */
+    public synchronized void recordSkipped(int count) {
+        skippedTicks += count;
+    }
+
+    public synchronized int getTicks() {
+        return ticks;
+    }
+
+    public synchronized int getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    public synchronized long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    public synchronized long getMeanLagNanos() {
+        return ticks == 0 ? 0 : totalLagNanos / ticks;
+    }
+
+    public synchronized long getMaxJitterNanos() {
+        return maxJitterNanos;
+    }
+
+    public synchronized long getMeanJitterNanos() {
+        return ticks < 2 ? 0 : totalJitterNanos / (ticks - 1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TickTiming{" +
+                "ticks=" + ticks +
+                ", skippedTicks=" + skippedTicks +
+                ", meanLagMicros=" + TimeUnit.NANOSECONDS.toMicros(getMeanLagNanos()) +
+                ", maxLagMicros=" + TimeUnit.NANOSECONDS.toMicros(maxLagNanos) +
+                ", meanJitterMicros=" + TimeUnit.NANOSECONDS.toMicros(getMeanJitterNanos()) +
+                ", maxJitterMicros=" + TimeUnit.NANOSECONDS.toMicros(maxJitterNanos) +
+                '}';
+    }
+}
@@ -11,7 +11,7 @@ public class TrackedObject {
     private final String id;
     private final long timestamp;
     private final String description;
-    private final List<CloudPoint> coordinates;
+    private final PointCloud coordinates;
 
     /**
      * Constructor for TrackedObject.
@@ -19,15 +19,27 @@ public class TrackedObject {
      * @param id          The unique ID of the tracked object.
      * @param timestamp   The time the object was tracked.
      * @param description A description of the tracked object.
-     * @param coordinates The list of coordinates (cloud points) associated with the object.
+     * @param coordinates The coordinates (cloud points) associated with the object.
      */
-    public TrackedObject(String id, long timestamp, String description, List<CloudPoint> coordinates) {
+    public TrackedObject(String id, long timestamp, String description, PointCloud coordinates) {
         this.id = id;
         this.timestamp = timestamp;
         this.description = description;
         this.coordinates = coordinates;
     }
 
+    /**
+     * Constructor for TrackedObject.
+     *
+     * @param id          The unique ID of the tracked object.
+     * @param timestamp   The time the object was tracked.
+     * @param description A description of the tracked object.
+     * @param coordinates The list of coordinates (cloud points) associated with the object.
+     */
+    public TrackedObject(String id, long timestamp, String description, List<CloudPoint> coordinates) {
+        this(id, timestamp, description, PointCloud.of(coordinates));
+    }
+
     /**
      * Gets the ID of the tracked object.
      *
@@ -58,9 +70,18 @@ public class TrackedObject {
     /**
      * Gets the list of coordinates (cloud points) of the tracked object.
      *
-     * @return The object's coordinates.
+     * @return A read-only view of the object's coordinates.
      */
     public List<CloudPoint> getCoordinates() {
+        return coordinates.asList();
+    }
+
+    /**
+     * Gets the coordinates (cloud points) of the tracked object.
+     *
+     * @return The object's coordinates.
+     */
+    public PointCloud getPointCloud() {
         return coordinates;
     }
 
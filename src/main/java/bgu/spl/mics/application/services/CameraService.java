@@ -1,7 +1,6 @@
 package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.MicroService;
-import bgu.spl.mics.application.messages.broadcasts.TickBroadcast;
 import bgu.spl.mics.application.messages.broadcasts.TerminatedBroadcast;
 import bgu.spl.mics.application.messages.broadcasts.CrashedBroadcast;
 import bgu.spl.mics.application.messages.events.DetectObjectsEvent;
@@ -33,36 +32,46 @@ public class CameraService extends MicroService {
 
     /**
      * Initializes the CameraService.
-     * Registers the service to handle TickBroadcasts and TerminatedBroadcasts.
+     * Schedules the detection ticks and registers the service to handle TerminatedBroadcasts.
      */
     @Override
     protected void initialize() {
-        // Subscribes to TickBroadcast to perform periodic operations.
-        // Each TickBroadcast acts as a heartbeat, allowing the service to check
-        // if it is time to detect objects based on the camera's frequency.
-        subscribeBroadcast(TickBroadcast.class, tick -> {
-            int currentTick = tick.getTick();
+        // Wakes up only at the ticks the camera detects objects, every 'frequency' ticks,
+        // instead of handling every TickBroadcast.
+        scheduleAtTick(period(), this::detect);
+        // Subscribe to the other two broadcasts and terminate if they're being sent
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> stop());
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> stop());
 
-            // The frequency condition ensures that detection only happens at specified intervals.
-            // The status condition ensures that the camera is operational before detecting objects.
-            if (camera.getStatus() == STATUS.UP && currentTick % camera.getFrequency() == 0) {
-                // Get all the objects that are detected in this current time we're at now
-                StampedDetectedObjects stampedDetectedObjects = camera.detectObjects(currentTick);
+        System.out.println(getName() + " initialized.");
+    }
 
-                // As long as we actually got detected object(s), send an event about it to the subscribers
-                if (!stampedDetectedObjects.getDetectedObjects().isEmpty()) {
-                    sendEvent(new DetectObjectsEvent<>(stampedDetectedObjects));
+    private void detect(int currentTick) {
+        // The status condition ensures that the camera is operational before detecting objects.
+        if (camera.getStatus() == STATUS.UP) {
+            // Get all the objects that are detected in this current time we're at now
+            StampedDetectedObjects stampedDetectedObjects = camera.detectObjects(currentTick);
 
-                    // Updates statistics to keep track of the number of detected objects.
-                    stats.incrementDetectedObjects(stampedDetectedObjects.getDetectedObjects().size());
-                    System.out.println("CameraService-" + camera.getId() + " detected objects at tick " + currentTick);
-                }
+            // As long as we actually got detected object(s), send an event about it to the subscribers
+            if (!stampedDetectedObjects.getDetectedObjects().isEmpty()) {
+                sendEvent(new DetectObjectsEvent<>(stampedDetectedObjects));
+
+                // Updates statistics to keep track of the number of detected objects.
+                stats.incrementDetectedObjects(stampedDetectedObjects.getDetectedObjects().size());
+                System.out.println("CameraService-" + camera.getId() + " detected objects at tick " + currentTick);
             }
-        });
-        // Subscribe to the other two broadcasts and terminate if they're being sent
-        subscribeBroadcast(TerminatedBroadcast.class, terminated -> terminate());
-        subscribeBroadcast(CrashedBroadcast.class, crashed -> terminate());
+        }
+        scheduleAtTick(currentTick + period(), this::detect);
+    }
 
-        System.out.println(getName() + " initialized.");
+    // The camera's detections are no longer needed once the service stops
+    private void stop() {
+        terminate();
+        camera.close();
+    }
+
+    // A camera with no frequency detects at every tick
+    private int period() {
+        return Math.max(camera.getFrequency(), 1);
     }
 }
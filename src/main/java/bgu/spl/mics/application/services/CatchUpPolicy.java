@@ -0,0 +1,14 @@
+package bgu.spl.mics.application.services;
+
+/**
+ * What the {@link TimeService} does when it fell behind its schedule by a whole tick or more,
+ * e.g. after a GC pause or under load.
+ * Possible policies:
+ * - SKIP: The missed ticks are not broadcast, the next tick is the one whose time has come.
+ *         Work scheduled for the missed ticks is still woken up.
+ * - BURST: The missed ticks are broadcast back to back until the schedule is caught up.
+ * - SLOW_DOWN: The schedule is shifted, the next tick comes a full tick time after the late one.
+ */
+public enum CatchUpPolicy {
+    SKIP, BURST, SLOW_DOWN
+}
@@ -1,7 +1,24 @@
 package bgu.spl.mics.application.services;
 
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.broadcasts.CrashedBroadcast;
+import bgu.spl.mics.application.messages.broadcasts.FusionShardFlushBroadcast;
+import bgu.spl.mics.application.messages.broadcasts.PoseBroadcast;
+import bgu.spl.mics.application.messages.broadcasts.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.events.FusionShardEvent;
+import bgu.spl.mics.application.messages.events.PoseEvent;
+import bgu.spl.mics.application.messages.events.TrackedObjectsEvent;
 import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * FusionSlamService integrates data from multiple sensors to build and update
@@ -9,26 +26,185 @@ import bgu.spl.mics.application.objects.FusionSlam;
  * 
  * This service receives TrackedObjectsEvents from LiDAR workers and PoseEvents from the PoseService,
  * transforming and updating the map with new landmarks.
+ * <p>
+ * In sharded mode the landmarks are partitioned by the hash of their id across several
+ * {@link FusionSlamShardService}s, so the map is built by as many threads as there are shards.
+ * This service then only splits every TrackedObjectsEvent into one FusionShardEvent per shard,
+ * and broadcasts every pose to all the shards. A TrackedObjectsEvent is completed once the shards
+ * handled all its FusionShardEvents. Each shard starts with the landmarks of the global
+ * map it owns and the poses already recorded. When this service terminates, after handling the
+ * TrackedObjectsEvents queued before the TerminatedBroadcast, it tells the shards to merge into
+ * the global map. The shards, listed by {@link #getShards()}, must be started along with this
+ * service, before the services that send TrackedObjectsEvents.
  */
 public class FusionSlamService extends MicroService {
 
+    private final FusionSlam fusionSlam;
+    private final StatisticalFolder stats;
+    private final List<FusionSlamShardService> shards; // Empty when not sharded
+
     /**
      * Constructor for FusionSlamService.
      *
      * @param fusionSlam The FusionSLAM object responsible for managing the global map.
      */
     public FusionSlamService(FusionSlam fusionSlam) {
-        super("Change_This_Name");
-        // TODO Implement this
+        this(fusionSlam, new StatisticalFolder());
+    }
+
+    /**
+     * Constructor for FusionSlamService.
+     *
+     * @param fusionSlam The FusionSLAM object responsible for managing the global map.
+     * @param stats      The StatisticalFolder for updating statistics.
+     */
+    public FusionSlamService(FusionSlam fusionSlam, StatisticalFolder stats) {
+        this(fusionSlam, stats, 1);
+    }
+
+    /**
+     * Constructor for FusionSlamService.
+     *
+     * @param fusionSlam The FusionSLAM object responsible for managing the global map.
+     * @param stats      The StatisticalFolder for updating statistics.
+     * @param shardCount The number of shards building the map, 1 to build it in this service.
+     */
+    public FusionSlamService(FusionSlam fusionSlam, StatisticalFolder stats, int shardCount) {
+        super("FusionSlamService");
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1, instead received: " + shardCount);
+        }
+        this.fusionSlam = fusionSlam;
+        this.stats = stats;
+        List<FusionSlamShardService> shards = new ArrayList<>();
+        if (shardCount > 1) {
+            // Each shard refines copies of the landmarks it owns, merge puts them back in the global map
+            List<List<LandMark>> landMarksByShard = new ArrayList<>(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                landMarksByShard.add(new ArrayList<>());
+            }
+            for (LandMark landMark : fusionSlam.getLandMarks()) {
+                landMarksByShard.get(shardOf(landMark.getId(), shardCount)).add(
+                        new LandMark(landMark.getId(), landMark.getDescription(), landMark.getPointCloud()));
+            }
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(new FusionSlamShardService(i, fusionSlam, landMarksByShard.get(i), stats));
+            }
+        }
+        this.shards = Collections.unmodifiableList(shards);
     }
 
     /**
      * Initializes the FusionSlamService.
-     * Registers the service to handle TrackedObjectsEvents, PoseEvents, and TickBroadcasts,
+     * Registers the service to handle TrackedObjectsEvents and PoseEvents,
      * and sets up callbacks for updating the global map.
      */
     @Override
     protected void initialize() {
-        // TODO Implement this
+        if (shards.isEmpty()) {
+            // Places the tracked objects on the map, all the objects of an event transformed as one batch
+            subscribeEvent(TrackedObjectsEvent.class, event -> {
+                int added = fusionSlam.processTrackedObjects(event.getTrackedObjects());
+                stats.incrementLandmarks(added);
+                complete(event, event.getTrackedObjects());
+            });
+        } else {
+            // The objects of a shard always reach the service holding its landmarks, so a landmark is only updated there
+            MessageBusImpl.getInstance().setRoutingPolicy(FusionShardEvent.class,
+                    (event, candidates, backlog) -> shards.get(event.getShard()));
+            subscribeEvent(TrackedObjectsEvent.class, event -> {
+                List<Future<List<TrackedObject>>> placed = sendEvents(partition(event.getTrackedObjects()));
+                resolveWhenAll(placed, deferCompletion(event), event.getTrackedObjects());
+            });
+        }
+
+        subscribePoseEvents();
+
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> stop());
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> stop());
+
+        System.out.println(getName() + " initialized.");
+    }
+
+    /**
+     * Gets the shards of a sharded FusionSlamService, to start along with it.
+     *
+     * @return The shard services, empty when the service is not sharded.
+     */
+    public List<FusionSlamShardService> getShards() {
+        return shards;
+    }
+
+    // The TrackedObjectsEvents queued before the broadcast were handled, and their FusionShardEvents
+    // reach every shard before the flush, so the shards merge only once they have all their objects
+    private void stop() {
+        if (!shards.isEmpty()) {
+            sendBroadcast(new FusionShardFlushBroadcast());
+        }
+        terminate();
+    }
+
+    // PoseEvent is generic, so its class literal is raw and subscribing with it is an unchecked call
+    @SuppressWarnings("unchecked")
+    private void subscribePoseEvents() {
+        subscribeEvent(PoseEvent.class, event -> recordPose(event));
+    }
+
+    // Records the poses of the robot, needed to place the objects tracked at their time,
+    // and places the objects that arrived before their pose
+    private void recordPose(PoseEvent<?> event) {
+        if (event.getPose() != null) {
+            stats.incrementLandmarks(fusionSlam.addPose(event.getPose()));
+            if (!shards.isEmpty()) {
+                // Sent before the objects of the following events, which reach the shards after it
+                sendBroadcast(new PoseBroadcast(event.getPose()));
+            }
+        }
+        complete(event, null);
+    }
+
+    // One event per shard that has objects, each with the objects of the landmarks it owns
+    private List<FusionShardEvent> partition(List<TrackedObject> trackedObjects) {
+        List<List<TrackedObject>> byShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (TrackedObject trackedObject : trackedObjects) {
+            byShard.get(shardOf(trackedObject.getId(), shards.size())).add(trackedObject);
+        }
+        List<FusionShardEvent> events = new ArrayList<>();
+        for (int i = 0; i < byShard.size(); i++) {
+            if (!byShard.get(i).isEmpty()) {
+                events.add(new FusionShardEvent(i, byShard.get(i)));
+            }
+        }
+        return events;
+    }
+
+    // Resolves done with result once all the futures are resolved. A null future, an event no shard took, is not waited for
+    private static <T> void resolveWhenAll(List<? extends Future<?>> futures, Future<T> done, T result) {
+        AtomicInteger pending = new AtomicInteger(futures.size() + 1);
+        for (Future<?> future : futures) {
+            if (future != null) {
+                future.whenResolved(placed -> {
+                    if (pending.decrementAndGet() == 0) {
+                        done.resolve(result);
+                    }
+                });
+            } else {
+                pending.decrementAndGet();
+            }
+        }
+        // The extra count keeps the futures resolved meanwhile from resolving done before all were counted
+        if (pending.decrementAndGet() == 0) {
+            done.resolve(result);
+        }
+    }
+
+    private static int shardOf(String landMarkId, int shardCount) {
+        int hash = landMarkId.hashCode();
+        // Spread the bits, so ids with similar hash codes still land on different shards
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, shardCount);
     }
 }
@@ -0,0 +1,80 @@
+package bgu.spl.mics.application.services;
+
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.broadcasts.FusionShardFlushBroadcast;
+import bgu.spl.mics.application.messages.broadcasts.PoseBroadcast;
+import bgu.spl.mics.application.messages.events.FusionShardEvent;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+
+import java.util.List;
+
+/**
+ * FusionSlamShardService builds one shard of the global map in a sharded fusion,
+ * the landmarks whose id hashes to its shard.
+ * <p>
+ * The shard is a map of its own, so shards never contend with each other. It starts with
+ * the landmarks of its shard and the poses already in the global map, then receives all the
+ * poses of the robot, and only the tracked objects of its landmarks.
+ * <p>
+ * The shard does not terminate on the TerminatedBroadcast or CrashedBroadcast: the Fusion-SLAM
+ * service may still have tracked objects for it. It merges into the global map and terminates
+ * on the FusionShardFlushBroadcast, which the Fusion-SLAM service sends after all of them.
+ */
+public class FusionSlamShardService extends MicroService {
+
+    private final FusionSlam shard;
+    private final FusionSlam fusionSlam;
+    private final StatisticalFolder stats;
+
+    /**
+     * Constructor for FusionSlamShardService.
+     *
+     * @param index      The index of the shard, used in the name of the service.
+     * @param fusionSlam The global map the shard is merged into.
+     * @param landMarks  Copies of the landmarks of the global map that belong to the shard.
+     * @param stats      The StatisticalFolder for updating statistics.
+     */
+    public FusionSlamShardService(int index, FusionSlam fusionSlam, List<LandMark> landMarks, StatisticalFolder stats) {
+        super("FusionSlamService-shard-" + index);
+        this.shard = new FusionSlam(landMarks, fusionSlam.getPoses());
+        this.fusionSlam = fusionSlam;
+        this.stats = stats;
+    }
+
+    /**
+     * Initializes the FusionSlamShardService.
+     * Registers the service to handle the FusionShardEvents of its shard, the PoseBroadcasts
+     * and the FusionShardFlushBroadcast.
+     */
+    @Override
+    protected void initialize() {
+        subscribeEvent(FusionShardEvent.class, event -> {
+            shard.processTrackedObjects(event.getTrackedObjects());
+            complete(event, event.getTrackedObjects());
+        });
+
+        // Also places the objects of the shard that arrived before their pose, counted when merged
+        subscribeBroadcast(PoseBroadcast.class, broadcast -> shard.addPose(broadcast.getPose()));
+
+        // Sent by the Fusion-SLAM service after its last FusionShardEvent, so the shard is complete
+        subscribeBroadcast(FusionShardFlushBroadcast.class, flush -> mergeAndTerminate());
+
+        System.out.println(getName() + " initialized.");
+    }
+
+    /**
+     * Gets the shard of the map built by this service.
+     *
+     * @return The shard.
+     */
+    public FusionSlam getShard() {
+        return shard;
+    }
+
+    private void mergeAndTerminate() {
+        stats.incrementLandmarks(fusionSlam.merge(shard));
+        terminate();
+    }
+}
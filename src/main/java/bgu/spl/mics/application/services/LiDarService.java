@@ -1,7 +1,8 @@
 package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.MicroService;
-import bgu.spl.mics.application.messages.broadcasts.TickBroadcast;
+import bgu.spl.mics.PriorityMailbox;
+import bgu.spl.mics.application.messages.broadcasts.CrashedBroadcast;
 import bgu.spl.mics.application.messages.broadcasts.TerminatedBroadcast;
 import bgu.spl.mics.application.messages.events.DetectObjectsEvent;
 import bgu.spl.mics.application.messages.events.TrackedObjectsEvent;
@@ -17,6 +18,7 @@ import java.util.List;
  * sending TrackedObjectsEvents to the Fusion-SLAM service.
  */
 public class LiDarService extends MicroService {
+    private static final int STATUS_PERIOD = 100; // Ticks between the worker status updates
 
     private final LiDarWorkerTracker lidarWorkerTracker;
     private final StatisticalFolder stats;
@@ -31,28 +33,27 @@ public class LiDarService extends MicroService {
         super("LiDarService-" + lidarWorkerTracker.getId());
         this.lidarWorkerTracker = lidarWorkerTracker;
         this.stats = stats;
+        // Shutdown broadcasts must not wait behind a backlog of DetectObjectsEvents
+        setMailbox(() -> new PriorityMailbox(TerminatedBroadcast.class, CrashedBroadcast.class));
     }
 
     /**
      * Initializes the LiDarService.
-     * Registers the service to handle TickBroadcasts and DetectObjectsEvents.
+     * Schedules the worker status updates and registers the service to handle DetectObjectsEvents.
      */
     @Override
     protected void initialize() {
-        // Subscribes to TickBroadcast to update worker status periodically.
-        subscribeBroadcast(TickBroadcast.class, tick -> {
-            lidarWorkerTracker.updateStatus(tick.getTick());
-        });
+        // Wakes up every 100 ticks to update the worker status, instead of on every tick.
+        scheduleAtTick(STATUS_PERIOD, this::updateStatus);
 
-        // Subscribes to DetectObjectsEvent to process detected objects from cameras.
+        // Subscribes to DetectObjectsEvent to track the objects detected by cameras,
+        // they are reported at the tick the worker's frequency allows it.
         subscribeEvent(DetectObjectsEvent.class, event -> {
             StampedDetectedObjects detectedObjects = event.getStampedDetectedObjects();
-            List<TrackedObject> trackedObjects = lidarWorkerTracker.processDetectedObjects(
+            int dueTick = lidarWorkerTracker.addPendingDetections(
                     detectedObjects.getDetectedObjects(), detectedObjects.getTimestamp());
-
-            if (!trackedObjects.isEmpty()) {
-                sendEvent(new TrackedObjectsEvent(trackedObjects));
-                stats.incrementTrackedObjects(trackedObjects.size());
+            if (dueTick >= 0) {
+                scheduleAtTick(dueTick, this::reportDue);
             }
         });
 
@@ -61,4 +62,18 @@ public class LiDarService extends MicroService {
 
         System.out.println(getName() + " initialized.");
     }
+
+    private void updateStatus(int tick) {
+        lidarWorkerTracker.updateStatus(tick);
+        scheduleAtTick(tick + STATUS_PERIOD, this::updateStatus);
+    }
+
+    // Sends the tracked objects that became due at this tick in a single event
+    private void reportDue(int tick) {
+        List<TrackedObject> trackedObjects = lidarWorkerTracker.releaseDue(tick);
+        if (!trackedObjects.isEmpty()) {
+            sendEvent(new TrackedObjectsEvent(trackedObjects));
+            stats.incrementTrackedObjects(trackedObjects.size());
+        }
+    }
 }
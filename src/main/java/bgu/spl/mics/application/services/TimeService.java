@@ -1,16 +1,40 @@
 package bgu.spl.mics.application.services;
 
+import bgu.spl.mics.ExecutionMode;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.TickScheduler;
 import bgu.spl.mics.application.messages.broadcasts.TerminatedBroadcast;
 import bgu.spl.mics.application.messages.broadcasts.TickBroadcast;
+import bgu.spl.mics.application.objects.TickTiming;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TimeService acts as the global timer for the system, broadcasting TickBroadcast messages
  * at regular intervals and controlling the simulation's duration.
+ * Every tick it also advances the {@link TickScheduler}, waking the services that scheduled work for it.
+ * <p>
+ * Tick k is due {@code (k - 1) * tickTime} after the first tick, measured with {@link System#nanoTime()},
+ * so the time spent broadcasting or a late wake-up never delays the following ticks.
+ * What happens when the service falls a whole tick behind is decided by its {@link CatchUpPolicy}.
+ * How late the ticks were is recorded in a {@link TickTiming}.
+ * <p>
+ * In replay mode the ticks are not paced by the clock: the next tick is broadcast as soon as
+ * all the services finished processing the previous one, so a recording is replayed as fast
+ * as the system can process it, with every tick fully processed before the next one starts.
  */
 public class TimeService extends MicroService {
     private int tickTime;
     private int duration;
+    private final boolean replay; // Whether the next tick waits for the system to be quiescent instead of tickTime
+    private final CatchUpPolicy catchUpPolicy;
+    private final TickTiming timing;
+    private ScheduledExecutorService ticker;
+    // Used only by the ticker thread
+    private long startNanos; // The deadline of the first tick, moved forward when slowing down
+    private int nextTick;
 
     /**
      * Constructor for TimeService.
@@ -19,9 +43,43 @@ public class TimeService extends MicroService {
      * @param Duration  The total number of ticks before the service terminates.
      */
     public TimeService(int TickTime, int Duration) {
+        this(TickTime, Duration, false, CatchUpPolicy.BURST);
+    }
+
+    /**
+     * Constructor for TimeService.
+     *
+     * @param tickTime The duration of each tick in milliseconds, ignored in replay mode.
+     * @param duration The total number of ticks before the service terminates.
+     * @param replay   Whether to broadcast each tick as soon as the previous one was processed.
+     */
+    public TimeService(int tickTime, int duration, boolean replay) {
+        this(tickTime, duration, replay, CatchUpPolicy.BURST);
+    }
+
+    /**
+     * Constructor for TimeService.
+     *
+     * @param tickTime      The duration of each tick in milliseconds.
+     * @param duration      The total number of ticks before the service terminates.
+     * @param catchUpPolicy What to do after falling a whole tick behind the schedule.
+     */
+    public TimeService(int tickTime, int duration, CatchUpPolicy catchUpPolicy) {
+        this(tickTime, duration, false, catchUpPolicy);
+    }
+
+    private TimeService(int tickTime, int duration, boolean replay, CatchUpPolicy catchUpPolicy) {
         super("TimeService");
-        this.tickTime = TickTime;
-        this.duration = Duration;
+        this.tickTime = tickTime;
+        this.duration = duration;
+        this.replay = replay;
+        this.catchUpPolicy = catchUpPolicy;
+        this.timing = new TickTiming();
+        this.nextTick = 1;
+        if (replay) {
+            // The services are constructed before any of them runs, so no message was sent yet
+            countMessagesInFlight();
+        }
     }
 
     /**
@@ -30,21 +88,92 @@ public class TimeService extends MicroService {
      */
     @Override
     protected void initialize() {
-        Thread thread = new Thread(() -> {
-            try {
-                for (int tick = 1; tick <= duration; tick++) {
-                    sendBroadcast(new TickBroadcast(tick));
-                    Thread.sleep(tickTime);
-                }
-                sendBroadcast(new TerminatedBroadcast("TimeService completed"));
-                terminate();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        });
-        thread.start();
+        // The ticker runs on the same kind of thread as the services (platform or virtual)
+        ticker = Executors.newSingleThreadScheduledExecutor(
+                task -> ExecutionMode.current().newThread(task, getName() + "-ticker"));
 
         // Subscribe to TerminatedBroadcast to terminate gracefully
-        subscribeBroadcast(TerminatedBroadcast.class, broadcast -> terminate());
+        subscribeBroadcast(TerminatedBroadcast.class, broadcast -> {
+            ticker.shutdownNow();
+            terminate();
+        });
+
+        if (replay) {
+            ticker.execute(this::replay);
+        } else {
+            startNanos = System.nanoTime();
+            ticker.execute(this::broadcastDueTick);
+        }
+    }
+
+    /**
+     * Gets how closely the ticks followed their schedule so far.
+     *
+     * @return The tick timing measures.
+     */
+    public TickTiming getTiming() {
+        return timing;
+    }
+
+    // Broadcasts the next tick, then schedules the one after it against its absolute deadline
+    private void broadcastDueTick() {
+        if (nextTick > duration) {
+            finish(); // Nothing to broadcast for a zero duration
+            return;
+        }
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(tickTime);
+        long now = System.nanoTime();
+        long lagNanos = now - deadlineOf(nextTick);
+        timing.recordTick(lagNanos);
+
+        if (periodNanos > 0 && lagNanos >= periodNanos) {
+            if (catchUpPolicy == CatchUpPolicy.SKIP) {
+                // Jump to the latest tick whose deadline passed, the scheduler still wakes the work of the skipped ticks
+                int dueTick = (int) Math.min(duration, nextTick + lagNanos / periodNanos);
+                timing.recordSkipped(dueTick - nextTick);
+                nextTick = dueTick;
+            } else if (catchUpPolicy == CatchUpPolicy.SLOW_DOWN) {
+                // Shift the whole schedule, so this tick is on time and the next one is a full period away
+                startNanos += lagNanos;
+            }
+        }
+
+        broadcastTick(nextTick);
+        if (nextTick >= duration) {
+            finish();
+            return;
+        }
+        nextTick++;
+        ticker.schedule(this::broadcastDueTick, deadlineOf(nextTick) - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    // Broadcasts every tick as soon as the system is quiescent after the previous one
+    private void replay() {
+        try {
+            for (int tick = 1; tick <= duration; tick++) {
+                broadcastTick(tick);
+                // The tick barrier: every message caused by this tick was handled
+                awaitQuiescence();
+            }
+            finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void broadcastTick(int tick) {
+        sendBroadcast(new TickBroadcast(tick));
+        // Wakes the services that scheduled work for this tick
+        TickScheduler.getInstance().advance(tick);
+    }
+
+    private void finish() {
+        sendBroadcast(new TerminatedBroadcast("TimeService completed"));
+        terminate();
+        ticker.shutdown();
+    }
+
+    private long deadlineOf(int tick) {
+        return startNanos + (tick - 1) * TimeUnit.MILLISECONDS.toNanos(tickTime);
     }
 }
@@ -1,5 +1,11 @@
 import bgu.spl.mics.Future;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,4 +45,128 @@ class FutureTest {
         future.resolve("Result");
         assertEquals("Result", future.get(200, TimeUnit.MILLISECONDS), "Future should return the resolved value if resolved before timeout");
     }
+
+    @Test
+    void testGetWithTimeoutWaitsUntilDeadline() {
+        Future<String> future = new Future<>();
+        long start = System.nanoTime();
+        assertNull(future.get(150, TimeUnit.MILLISECONDS), "Future should return null if not resolved within timeout");
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis >= 150, "get should not return before the deadline, waited " + waitedMillis + "ms");
+    }
+
+    @Test
+    void testWhenResolvedRunsContinuationsInOrder() {
+        Future<String> future = new Future<>();
+        List<String> calls = new ArrayList<>();
+        future.whenResolved(result -> calls.add("first " + result));
+        future.whenResolved(result -> calls.add("second " + result));
+        assertTrue(calls.isEmpty(), "Continuations should not run before resolve");
+
+        future.resolve("Result");
+        future.whenResolved(result -> calls.add("late " + result));
+        assertEquals(Arrays.asList("first Result", "second Result", "late Result"), calls);
+    }
+
+    @Test
+    void testResolveOnlyOnce() {
+        Future<String> future = new Future<>();
+        future.resolve("First");
+        future.resolve("Second");
+        assertEquals("First", future.get(), "Only the first resolve should count");
+    }
+
+    @Test
+    void testThenApply() {
+        Future<Integer> future = new Future<>();
+        Future<String> mapped = future.thenApply(value -> "value=" + (value * 2));
+        assertFalse(mapped.isDone(), "Mapped future should not be done before the source");
+
+        future.resolve(21);
+        assertTrue(mapped.isDone(), "Mapped future should be done once the source is resolved");
+        assertEquals("value=42", mapped.get());
+    }
+
+    @Test
+    void testThenApplyFailureStaysInMappedFuture() {
+        Future<Integer> future = new Future<>();
+        Future<String> mapped = future.thenApply(value -> {
+            throw new IllegalStateException("Failed mapping " + value);
+        });
+        List<Integer> calls = new ArrayList<>();
+        future.whenResolved(calls::add);
+
+        assertDoesNotThrow(() -> future.resolve(7), "A failing mapping should not reach the resolving thread");
+        assertTrue(mapped.isDone(), "Mapped future should be done even if the mapping failed");
+        CompletionException thrown = assertThrows(CompletionException.class, mapped::get);
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+        assertEquals("Failed mapping 7", thrown.getCause().getMessage());
+        assertThrows(CompletionException.class, () -> mapped.get(0, TimeUnit.NANOSECONDS));
+        assertEquals(Arrays.asList(7), calls, "The other continuations should still run");
+    }
+
+    @Test
+    void testFailurePropagatesAlongTheChain() {
+        Future<Integer> future = new Future<>();
+        Future<Integer> failed = future.thenApply(value -> {
+            throw new IllegalArgumentException("Failed");
+        });
+        List<String> calls = new ArrayList<>();
+        Future<String> chained = failed.thenApply(value -> {
+            calls.add("mapped " + value);
+            return "never";
+        });
+        failed.whenResolved(value -> calls.add("resolved " + value));
+        CompletableFuture<Integer> completable = failed.toCompletableFuture();
+
+        future.resolve(1);
+        assertTrue(chained.isDone());
+        CompletionException thrown = assertThrows(CompletionException.class, chained::get);
+        assertInstanceOf(IllegalArgumentException.class, thrown.getCause(), "The first failure should be kept");
+        assertTrue(calls.isEmpty(), "Neither the mapping nor the callbacks of a failed future should run");
+        ExecutionException bridged = assertThrows(ExecutionException.class, () -> completable.get(200, TimeUnit.MILLISECONDS));
+        assertInstanceOf(IllegalArgumentException.class, bridged.getCause());
+
+        failed.whenResolved(value -> calls.add("late " + value));
+        assertTrue(calls.isEmpty(), "A callback registered after the failure should not run either");
+    }
+
+    @Test
+    void testPollingThenWaiting() throws InterruptedException {
+        Future<String> future = new Future<>();
+        for (int i = 0; i < 1000; i++) {
+            assertNull(future.get(0, TimeUnit.NANOSECONDS), "Polling an unresolved future should return null");
+        }
+        Thread resolver = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            future.resolve("Result");
+        });
+        resolver.start();
+        assertEquals("Result", future.get(5, TimeUnit.SECONDS), "A waiter after many polls should still be woken");
+        resolver.join();
+    }
+
+    @Test
+    void testCompletableFutureBridge() throws Exception {
+        Future<String> future = new Future<>();
+        CompletableFuture<String> completable = future.toCompletableFuture();
+        future.resolve("Result");
+        assertEquals("Result", completable.get(200, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<String> source = new CompletableFuture<>();
+        Future<String> converted = Future.fromCompletionStage(source);
+        assertFalse(converted.isDone(), "Converted future should not be done before the source completes");
+        source.complete("Done");
+        assertEquals("Done", converted.get(200, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        Future<String> failed = Future.fromCompletionStage(failing);
+        failing.completeExceptionally(new IllegalStateException("Source failed"));
+        assertTrue(failed.isDone());
+        CompletionException thrown = assertThrows(CompletionException.class, failed::get);
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+    }
 }
@@ -0,0 +1,66 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class ExecutionModeTest {
+
+    private static class Request implements Event<String> {
+    }
+
+    private static class Stop implements Broadcast {
+    }
+
+    // Whether this Java version can create virtual threads, asked the way ExecutionMode asks
+    private static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual").invoke(null);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    @Test
+    void testVirtualFallsBackToPlatformThreads() throws InterruptedException {
+        assumeFalse(hasVirtualThreads(), "This Java version has virtual threads, there is nothing to fall back from");
+        MicroService service = new MicroService("fallback") {
+            @Override
+            protected void initialize() {
+                subscribeEvent(Request.class, request -> complete(request, Thread.currentThread().getName()));
+                subscribeBroadcast(Stop.class, stop -> terminate());
+            }
+        };
+        Thread thread = ExecutionMode.VIRTUAL.start(service);
+        assertEquals(Thread.class, thread.getClass(), "Without virtual threads a platform thread should run the service");
+        assertEquals("fallback", thread.getName());
+
+        MessageBusImpl bus = MessageBusImpl.getInstance();
+        try {
+            Future<String> future = null;
+            for (long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                 future == null && System.nanoTime() < deadline; ) {
+                future = bus.sendEvent(new Request()); // Null until the service subscribed
+                Thread.sleep(1);
+            }
+            assertNotNull(future);
+            assertEquals("fallback", future.get(5, TimeUnit.SECONDS));
+        } finally {
+            bus.sendBroadcast(new Stop());
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void testPlatformThreadsAreNotStarted() {
+        Thread thread = ExecutionMode.PLATFORM.newThread(() -> { }, "platform");
+        assertEquals(Thread.class, thread.getClass());
+        assertEquals("platform", thread.getName());
+        assertEquals(Thread.State.NEW, thread.getState());
+    }
+}
@@ -0,0 +1,93 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxTest {
+
+    private static class Data implements Event<Integer> {
+    }
+
+    private static class Stop implements Broadcast {
+    }
+
+    private static class Other implements Broadcast {
+    }
+
+    private static Envelope<Integer> event() {
+        return new Envelope<>(new Data());
+    }
+
+    private static List<Message> drain(Mailbox mailbox) {
+        List<Message> messages = new ArrayList<>();
+        mailbox.drainTo(messages, Integer.MAX_VALUE);
+        return messages;
+    }
+
+    @Test
+    void testBoundedMailboxIsFifo() throws InterruptedException {
+        BoundedMailbox mailbox = new BoundedMailbox(3, OverflowPolicy.REJECT);
+        Message first = event();
+        Message second = new Stop();
+        assertTrue(mailbox.put(first));
+        assertEquals(2, mailbox.putAll(Arrays.asList(second, event())));
+        assertSame(first, mailbox.take());
+        assertSame(second, mailbox.take());
+        assertEquals(1, mailbox.size());
+    }
+
+    @Test
+    void testRejectRefusesEventsWhenFull() {
+        BoundedMailbox mailbox = new BoundedMailbox(2, OverflowPolicy.REJECT);
+        assertEquals(2, mailbox.putAll(Arrays.asList(event(), event(), event())));
+        assertFalse(mailbox.put(event()));
+        assertEquals(2, mailbox.size());
+        assertEquals(0, mailbox.getDroppedCount());
+    }
+
+    @Test
+    void testDropOldestDropsOnlyEvents() {
+        BoundedMailbox mailbox = new BoundedMailbox(3, OverflowPolicy.DROP_OLDEST);
+        Message stop = new Stop();
+        Message oldest = event();
+        Message newer = event();
+        mailbox.putAll(Arrays.asList(stop, oldest, newer));
+        Message newest = event();
+        assertTrue(mailbox.put(newest));
+        assertEquals(Arrays.asList(stop, newer, newest), drain(mailbox));
+        assertEquals(1, mailbox.getDroppedCount());
+    }
+
+    @Test
+    void testControlMessagesWaitForRoomInsteadOfBeingLost() throws InterruptedException {
+        BoundedMailbox mailbox = new BoundedMailbox(1, OverflowPolicy.DROP_OLDEST);
+        Message other = new Other();
+        mailbox.put(other);
+        Message stop = new Stop();
+        Thread sender = new Thread(() -> mailbox.put(stop));
+        sender.start();
+        sender.join(100);
+        assertTrue(sender.isAlive(), "A broadcast must not replace another one");
+        assertSame(other, mailbox.take());
+        sender.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(sender.isAlive());
+        assertSame(stop, mailbox.take());
+        assertEquals(0, mailbox.getDroppedCount());
+    }
+
+    @Test
+    void testPriorityMailboxTakesUrgentTypesFirst() {
+        PriorityMailbox mailbox = new PriorityMailbox(Stop.class);
+        Message first = event();
+        Message other = new Other();
+        Message stop = new Stop();
+        mailbox.putAll(Arrays.asList(first, other, stop));
+        assertEquals(Arrays.asList(stop, first, other), drain(mailbox));
+    }
+}
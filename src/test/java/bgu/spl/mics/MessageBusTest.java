@@ -0,0 +1,245 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageBusTest {
+
+    private static class Request implements Event<Integer> {
+        private final int value;
+
+        Request(int value) {
+            this.value = value;
+        }
+    }
+
+    private static class Release implements Broadcast {
+    }
+
+    private static class Stop implements Broadcast {
+    }
+
+    private static class Idle extends MicroService {
+        Idle() {
+            super("idle");
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+
+    private static class Bounded extends MicroService {
+        Bounded(int capacity, OverflowPolicy policy) {
+            super("bounded");
+            setMailbox(() -> new BoundedMailbox(capacity, policy));
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+
+    @AfterEach
+    void stopCounting() {
+        // The bus is shared by all the tests, a test that counted the messages in flight must not leave it on
+        bus.stopCountingInFlight();
+    }
+
+    @Test
+    void testCompleteAfterAwaitMessage() throws InterruptedException {
+        MicroService m = new Idle();
+        bus.register(m);
+        try {
+            bus.subscribeEvent(Request.class, m);
+            Request request = new Request(1);
+            Future<Integer> future = bus.sendEvent(request);
+            assertNotNull(future);
+            assertSame(request, bus.awaitMessage(m), "The callback side should receive the event itself");
+
+            bus.complete(request, 42);
+            assertTrue(future.isDone());
+            assertEquals(42, future.get());
+        } finally {
+            bus.unregister(m);
+        }
+    }
+
+    @Test
+    void testCompleteFromAnotherThread() throws InterruptedException {
+        MicroService m = new Idle();
+        bus.register(m);
+        try {
+            bus.subscribeEvent(Request.class, m);
+            Request first = new Request(1);
+            Request second = new Request(2);
+            Future<Integer> firstFuture = bus.sendEvent(first);
+            Future<Integer> secondFuture = bus.sendEvent(second);
+            assertSame(first, bus.awaitMessage(m));
+            assertSame(second, bus.awaitMessage(m));
+
+            // The first event is still known after the second was taken, and the taking thread is not needed
+            Thread completer = new Thread(() -> bus.complete(first, 1));
+            completer.start();
+            completer.join(TimeUnit.SECONDS.toMillis(5));
+            assertEquals(1, firstFuture.get(5, TimeUnit.SECONDS));
+            assertThrows(IllegalStateException.class, () -> bus.complete(first, 3), "An event is completed only once");
+
+            bus.complete(second, 2);
+            assertEquals(2, secondFuture.get(5, TimeUnit.SECONDS));
+        } finally {
+            bus.unregister(m);
+        }
+    }
+
+    @Test
+    void testSendEventWithoutSubscribers() {
+        assertNull(bus.sendEvent(new Request(1)));
+    }
+
+    @Test
+    void testCallbackCompletesOrDefersItsEvent() throws InterruptedException {
+        MicroService service = new MicroService("deferring") {
+            private Future<Integer> deferred;
+
+            @Override
+            protected void initialize() {
+                subscribeEvent(Request.class, request -> {
+                    if (request.value % 2 == 0) {
+                        complete(request, request.value);
+                    } else {
+                        deferred = deferCompletion(request);
+                        assertThrows(IllegalStateException.class, () -> deferCompletion(request));
+                    }
+                });
+                subscribeBroadcast(Release.class, release -> deferred.resolve(-1));
+                subscribeBroadcast(Stop.class, stop -> terminate());
+            }
+        };
+        Thread thread = new Thread(service);
+        thread.start();
+        try {
+            Future<Integer> even = null;
+            for (long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                 even == null && System.nanoTime() < deadline; ) {
+                even = bus.sendEvent(new Request(2)); // Null until the service subscribed
+                Thread.sleep(1);
+            }
+            assertNotNull(even);
+            assertEquals(2, even.get(5, TimeUnit.SECONDS));
+
+            Future<Integer> odd = bus.sendEvent(new Request(3));
+            assertNull(odd.get(50, TimeUnit.MILLISECONDS), "A deferred event should wait for its Future to be resolved");
+            bus.sendBroadcast(new Release());
+            assertEquals(-1, odd.get(5, TimeUnit.SECONDS));
+        } finally {
+            bus.sendBroadcast(new Stop());
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void testQuiescenceCountsDroppedEvents() throws InterruptedException {
+        bus.countInFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        MicroService slow = new MicroService("slow") {
+            {
+                setMailbox(() -> new BoundedMailbox(2, OverflowPolicy.DROP_OLDEST));
+            }
+
+            @Override
+            protected void initialize() {
+                subscribeEvent(Request.class, request -> {
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    handled.incrementAndGet();
+                    complete(request, request.value);
+                });
+                subscribeBroadcast(Stop.class, stop -> terminate());
+                started.countDown();
+            }
+        };
+        Thread thread = new Thread(slow);
+        thread.start();
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // The first event blocks the service, two more fill its mailbox and the rest each drop the oldest
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(bus.sendEvent(new Request(i)));
+            }
+            gate.countDown();
+            assertTimeoutPreemptively(Duration.ofSeconds(5), bus::awaitQuiescence);
+            assertTrue(handled.get() >= 1 && handled.get() <= 3, "Only the events that were not dropped are handled");
+        } finally {
+            bus.sendBroadcast(new Stop());
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        assertFalse(thread.isAlive());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), bus::awaitQuiescence);
+    }
+
+    @Test
+    void testUnregisterRacesSenders() throws InterruptedException {
+        bus.countInFlight();
+        for (int round = 0; round < 1000; round++) {
+            MicroService m = new Idle();
+            bus.register(m);
+            bus.subscribeEvent(Request.class, m);
+            CountDownLatch sending = new CountDownLatch(1);
+            Thread sender = new Thread(() -> {
+                sending.countDown();
+                // Keeps sending until the event no longer finds m
+                while (bus.sendEvent(new Request(0)) != null) {
+                    Thread.yield();
+                }
+            });
+            sender.start();
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            bus.unregister(m);
+            sender.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(sender.isAlive());
+            // Whether accepted before unregister or rejected after it, no event may stay counted as in flight
+            assertTimeoutPreemptively(Duration.ofSeconds(5), bus::awaitQuiescence, "Round " + round);
+        }
+    }
+
+    @Test
+    void testUnregisterWakesBlockedSender() throws InterruptedException {
+        MicroService m = new Bounded(1, OverflowPolicy.BLOCK);
+        bus.register(m);
+        bus.subscribeEvent(Request.class, m);
+        assertNotNull(bus.sendEvent(new Request(1)));
+        AtomicInteger results = new AtomicInteger();
+        Thread sender = new Thread(() -> {
+            if (bus.sendEvent(new Request(2)) == null) {
+                results.incrementAndGet();
+            }
+        });
+        sender.start();
+        // The mailbox is full, so the sender waits for room
+        for (long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+             sender.getState() != Thread.State.WAITING && System.nanoTime() < deadline; ) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, sender.getState());
+        bus.unregister(m);
+        sender.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(sender.isAlive(), "Unregistering should wake the sender waiting for room");
+        assertEquals(1, results.get(), "The event of the woken sender should be rejected");
+    }
+}
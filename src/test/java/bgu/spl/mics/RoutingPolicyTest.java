@@ -0,0 +1,98 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingPolicyTest {
+
+    private static class Keyed implements Event<Void> {
+        private final int key;
+
+        Keyed(int key) {
+            this.key = key;
+        }
+    }
+
+    private static class Idle extends MicroService {
+        Idle(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+
+    private static MicroService[] services(int count) {
+        MicroService[] services = new MicroService[count];
+        for (int i = 0; i < count; i++) {
+            services[i] = new Idle("service-" + i);
+        }
+        return services;
+    }
+
+    private static ToIntFunction<MicroService> backlogs(Map<MicroService, Integer> backlogs) {
+        return m -> backlogs.getOrDefault(m, 0);
+    }
+
+    @Test
+    void testStickyRoutingKeepsKeysOnOneService() {
+        MicroService[] candidates = services(4);
+        StickyRouting<Keyed> policy = new StickyRouting<>(event -> event.key);
+        Set<MicroService> used = new HashSet<>();
+        for (int key = 0; key < 4; key++) {
+            MicroService chosen = policy.select(new Keyed(key), candidates, m -> 0);
+            assertSame(chosen, policy.select(new Keyed(key), candidates, m -> 0), "A key should always reach the same service");
+            used.add(chosen);
+        }
+        assertEquals(4, used.size(), "Small consecutive keys should spread over all the services");
+    }
+
+    @Test
+    void testLeastQueueDepthPicksTheShortestQueue() {
+        MicroService[] candidates = services(3);
+        Map<MicroService, Integer> backlog = new HashMap<>();
+        backlog.put(candidates[0], 5);
+        backlog.put(candidates[1], 1);
+        backlog.put(candidates[2], 3);
+        LeastQueueDepthRouting policy = new LeastQueueDepthRouting();
+        for (int i = 0; i < 6; i++) {
+            assertSame(candidates[1], policy.select(new Keyed(i), candidates, backlogs(backlog)));
+        }
+    }
+
+    @Test
+    void testLeastQueueDepthRotatesOnTies() {
+        MicroService[] candidates = services(3);
+        LeastQueueDepthRouting policy = new LeastQueueDepthRouting();
+        Set<MicroService> used = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            used.add(policy.select(new Keyed(i), candidates, m -> 0));
+        }
+        assertEquals(3, used.size(), "Idle services should share the events");
+    }
+
+    @Test
+    void testPowerOfTwoChoicesPrefersTheLessLoaded() {
+        MicroService[] candidates = services(2);
+        Map<MicroService, Integer> backlog = new HashMap<>();
+        backlog.put(candidates[0], 10);
+        PowerOfTwoChoicesRouting policy = new PowerOfTwoChoicesRouting();
+        for (int i = 0; i < 20; i++) {
+            assertSame(candidates[1], policy.select(new Keyed(i), candidates, backlogs(backlog)));
+        }
+    }
+
+    @Test
+    void testOnlyEventTypesAreRouted() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MessageBusImpl.getInstance().setRoutingPolicy(Broadcast.class, new StickyRouting<Broadcast>(b -> 0)));
+    }
+}
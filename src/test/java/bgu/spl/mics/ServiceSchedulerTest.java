@@ -0,0 +1,168 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceSchedulerTest {
+
+    private static class Request implements Event<Integer> {
+        private final int value;
+
+        Request(int value) {
+            this.value = value;
+        }
+    }
+
+    // Events of their own type for a second service, so each service has its own subscribers
+    private static class OtherRequest implements Event<Integer> {
+        private final int value;
+
+        OtherRequest(int value) {
+            this.value = value;
+        }
+    }
+
+    private static class Stop implements Broadcast {
+    }
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+    private ServiceScheduler scheduler;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        bus.sendBroadcast(new Stop());
+        scheduler.awaitTermination();
+        scheduler.shutdown();
+    }
+
+    // Sends e until a subscriber receives it, the services subscribe on the pool
+    private <T> Future<T> sendWhenSubscribed(Event<T> e) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Future<T> future;
+        while ((future = bus.sendEvent(e)) == null) {
+            assertTrue(System.nanoTime() < deadline, "The service did not subscribe");
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    @Test
+    void testServiceNeverRunsOnTwoWorkersAtOnce() throws InterruptedException {
+        scheduler = new ServiceScheduler(4, 3);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        scheduler.start(new MicroService("single") {
+            @Override
+            protected void initialize() {
+                subscribeEvent(Request.class, request -> {
+                    if (active.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    Thread.yield(); // Widens the window another worker would run in
+                    active.decrementAndGet();
+                    complete(request, request.value);
+                });
+                subscribeBroadcast(Stop.class, stop -> terminate());
+            }
+        });
+        assertEquals(-1, sendWhenSubscribed(new Request(-1)).get(5, TimeUnit.SECONDS));
+
+        // Every sender schedules the service, from many threads at once
+        int senders = 4;
+        int perSender = 500;
+        List<Future<Integer>> futures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < senders; s++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perSender; i++) {
+                    futures.add(bus.sendEvent(new Request(i)));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        assertEquals(senders * perSender, futures.size());
+        for (Future<Integer> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, overlaps.get(), "The callbacks of a service must never run concurrently");
+    }
+
+    @Test
+    void testServiceYieldsAfterBatchAndIsRescheduledOnRefill() throws InterruptedException {
+        // A single worker, so the order the services run in is the order they are scheduled in
+        scheduler = new ServiceScheduler(1, 2);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        scheduler.start(new MicroService("a") {
+            @Override
+            protected void initialize() {
+                subscribeEvent(Request.class, request -> {
+                    if (request.value == 0) {
+                        entered.countDown();
+                        try {
+                            gate.await(); // Holds the worker while the test fills both mailboxes
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    handled.add("a" + request.value);
+                    complete(request, request.value);
+                });
+                subscribeBroadcast(Stop.class, stop -> terminate());
+            }
+        });
+        scheduler.start(new MicroService("b") {
+            @Override
+            protected void initialize() {
+                subscribeEvent(OtherRequest.class, request -> {
+                    handled.add("b" + request.value);
+                    complete(request, request.value);
+                });
+                subscribeBroadcast(Stop.class, stop -> terminate());
+            }
+        });
+        assertEquals(-1, sendWhenSubscribed(new OtherRequest(-1)).get(5, TimeUnit.SECONDS));
+        handled.clear();
+
+        Future<Integer> first = sendWhenSubscribed(new Request(0));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            futures.add(bus.sendEvent(new Request(i)));
+            futures.add(bus.sendEvent(new OtherRequest(i)));
+        }
+        gate.countDown();
+        assertEquals(0, first.get(5, TimeUnit.SECONDS));
+        for (Future<Integer> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        // Each turn handles at most a batch of two, then the other service gets the worker
+        assertEquals(Arrays.asList("a0", "b1", "b2", "a1", "a2", "b3", "b4", "a3", "a4"), handled);
+
+        // Once its mailbox is empty the service is idle, a new message schedules it again
+        handled.clear();
+        assertEquals(5, bus.sendEvent(new Request(5)).get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("a5"), handled);
+    }
+}
@@ -0,0 +1,58 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testReleasesItemsAtTheirDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        assertTrue(wheel.schedule(3, "three"));
+        assertTrue(wheel.schedule(1, "one"));
+        assertFalse(wheel.schedule(0, "now"), "An item due now is not kept");
+        List<String> due = new ArrayList<>();
+        wheel.advance(2, due);
+        assertEquals(List.of("one"), due);
+        due.clear();
+        wheel.advance(3, due);
+        assertEquals(List.of("three"), due);
+        assertEquals(0, wheel.size());
+        assertEquals(3, wheel.currentTick());
+    }
+
+    @Test
+    void testFarDeadlinesCascadeDownTheLevels() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(10);
+        Random random = new Random(17);
+        TreeMap<Integer, List<Integer>> expected = new TreeMap<>();
+        for (int i = 0; i < 2000; i++) {
+            // Deadlines on every level, up to about 64^4 ticks ahead
+            int deadline = 11 + random.nextInt(1 << (6 * (1 + i % 4)));
+            wheel.schedule(deadline, deadline);
+            expected.computeIfAbsent(deadline, key -> new ArrayList<>()).add(deadline);
+        }
+        int tick = 10;
+        List<Integer> due = new ArrayList<>();
+        while (!expected.isEmpty()) {
+            tick += 1 + random.nextInt(5000);
+            due.clear();
+            wheel.advance(tick, due);
+            List<Integer> expectedDue = new ArrayList<>();
+            for (List<Integer> items : expected.headMap(tick, true).values()) {
+                expectedDue.addAll(items);
+            }
+            expected.headMap(tick, true).clear();
+            due.sort(null);
+            assertEquals(expectedDue, due, "Released the wrong items at tick " + tick);
+            assertEquals(tick, wheel.currentTick());
+        }
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,114 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CameraDataTest {
+    private static final String FLAT_FILE = "example input/camera_data.json";
+    private static final String NESTED_FILE = "example_input_2/camera_data.json";
+
+    // The detected object ids of a camera by time, read from the whole file at once
+    private static Map<Integer, List<String>> expectedIds(String filePath, String cameraKey) throws IOException {
+        Map<Integer, List<String>> ids = new TreeMap<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            JsonObject cameras = JsonParser.parseReader(reader).getAsJsonObject();
+            collect(cameras.getAsJsonArray(cameraKey), ids);
+        }
+        return ids;
+    }
+
+    private static void collect(JsonArray entries, Map<Integer, List<String>> ids) {
+        for (JsonElement entry : entries) {
+            if (entry.isJsonArray()) {
+                collect(entry.getAsJsonArray(), ids);
+                continue;
+            }
+            JsonObject object = entry.getAsJsonObject();
+            List<String> objectIds = new ArrayList<>();
+            for (JsonElement detectedObject : object.getAsJsonArray("detectedObjects")) {
+                objectIds.add(detectedObject.getAsJsonObject().get("id").getAsString());
+            }
+            ids.putIfAbsent(object.get("time").getAsInt(), objectIds);
+        }
+    }
+
+    private static List<String> ids(StampedDetectedObjects stampedDetectedObjects) {
+        List<String> ids = new ArrayList<>();
+        for (DetectedObject detectedObject : stampedDetectedObjects.getDetectedObjects()) {
+            ids.add(detectedObject.getId());
+        }
+        return ids;
+    }
+
+    private static void assertStreamsLikeFile(String filePath, String cameraKey) throws IOException {
+        Map<Integer, List<String>> expected = expectedIds(filePath, cameraKey);
+        assertFalse(expected.isEmpty());
+        int last = ((TreeMap<Integer, List<String>>) expected).lastKey();
+        try (StreamingCameraData data = new StreamingCameraData(filePath, cameraKey)) {
+            for (int tick = 0; tick <= last + 1; tick++) {
+                StampedDetectedObjects found = data.detectionsAt(tick);
+                if (expected.containsKey(tick)) {
+                    assertNotNull(found, "Missing the detections at tick " + tick);
+                    assertEquals(tick, found.getTimestamp());
+                    assertEquals(expected.get(tick), ids(found));
+                } else {
+                    assertNull(found, "Unexpected detections at tick " + tick);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testStreamsFlatCameraArray() throws IOException {
+        assertStreamsLikeFile(FLAT_FILE, "camera1");
+    }
+
+    @Test
+    void testStreamsNestedCameraArray() throws IOException {
+        assertStreamsLikeFile(NESTED_FILE, "camera1");
+        assertStreamsLikeFile(NESTED_FILE, "camera2");
+    }
+
+    @Test
+    void testUnknownCameraHasNoDetections() throws IOException {
+        try (StreamingCameraData data = new StreamingCameraData(FLAT_FILE, "camera9")) {
+            assertNull(data.detectionsAt(2));
+        }
+    }
+
+    @Test
+    void testIndexedDataFindsDetectionsOutOfOrder() {
+        StampedDetectedObjects atTwo = new StampedDetectedObjects(2, Collections.singletonList(new DetectedObject("Wall_1", "Wall")));
+        StampedDetectedObjects atFive = new StampedDetectedObjects(5, Collections.singletonList(new DetectedObject("Wall_2", "Wall")));
+        IndexedCameraData data = new IndexedCameraData(Arrays.asList(atFive, atTwo));
+        assertSame(atFive, data.detectionsAt(5));
+        assertSame(atTwo, data.detectionsAt(2));
+        assertNull(data.detectionsAt(3));
+    }
+
+    @Test
+    void testCameraStampsEmptyDetectionsWithTheTick() {
+        Camera camera = new Camera(1, 0, Collections.emptyList());
+        StampedDetectedObjects none = camera.detectObjects(7);
+        assertEquals(7, none.getTimestamp());
+        assertTrue(none.getDetectedObjects().isEmpty());
+        camera.close();
+    }
+}
@@ -0,0 +1,94 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LandMarkGridTest {
+
+    private static PointCloud randomCloud(Random random, double spread) {
+        PointCloud.Builder builder = new PointCloud.Builder();
+        double x = random.nextDouble() * 100 - 50;
+        double y = random.nextDouble() * 100 - 50;
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            builder.add(x + random.nextDouble() * spread, y + random.nextDouble() * spread);
+        }
+        return builder.build();
+    }
+
+    private static Set<String> ids(Iterable<LandMark> landMarks) {
+        Set<String> ids = new HashSet<>();
+        for (LandMark landMark : landMarks) {
+            ids.add(landMark.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testQueriesMatchAFullScan() {
+        Random random = new Random(22);
+        FusionSlam slam = new FusionSlam(Collections.emptyList(), Collections.emptyList(), 100, 10, 2.5);
+        for (int i = 0; i < 3000; i++) {
+            // Mostly small landmarks, a few thousand cells wide, refined many times
+            double spread = i % 100 == 0 ? 500 : 3;
+            slam.updateLandMark("LandMark_" + random.nextInt(300), "Object", randomCloud(random, spread));
+        }
+        for (int query = 0; query < 300; query++) {
+            double minX = random.nextDouble() * 120 - 60;
+            double minY = random.nextDouble() * 120 - 60;
+            double maxX = minX + random.nextDouble() * (query % 10 == 0 ? 1000 : 10);
+            double maxY = minY + random.nextDouble() * 10;
+            Set<String> expected = new HashSet<>();
+            for (LandMark landMark : slam.getLandMarks()) {
+                if (landMark.getPointCloud().anyInside(minX, minY, maxX, maxY)) {
+                    expected.add(landMark.getId());
+                }
+            }
+            assertEquals(expected, ids(slam.getLandMarksInBox(minX, minY, maxX, maxY)));
+
+            double x = random.nextDouble() * 100 - 50;
+            double y = random.nextDouble() * 100 - 50;
+            double radius = random.nextDouble() * 8;
+            expected.clear();
+            for (LandMark landMark : slam.getLandMarks()) {
+                if (landMark.getPointCloud().anyWithin(x, y, radius)) {
+                    expected.add(landMark.getId());
+                }
+            }
+            assertEquals(expected, ids(slam.getLandMarksWithin(x, y, radius)));
+        }
+    }
+
+    @Test
+    void testWideLandMarksAreKeptAside() {
+        LandMarkGrid grid = new LandMarkGrid(1, 16);
+        grid.update("wide", PointCloud.wrap(new double[]{0, 0, 1e9, 1e9}));
+        assertEquals(0, grid.getOccupiedCellCount());
+        assertEquals(1, grid.getWideLandMarkCount());
+        assertTrue(grid.candidates(-5, -5, -4, -4).contains("wide"));
+
+        grid.update("wide", PointCloud.wrap(new double[]{0.5, 0.5}));
+        assertEquals(0, grid.getWideLandMarkCount());
+        assertEquals(Collections.singleton("wide"), grid.candidates(0, 0, 0.9, 0.9));
+        assertTrue(grid.candidates(-5, -5, -4, -4).isEmpty());
+    }
+
+    @Test
+    void testMovedLandMarkIsFoundAtBothCoordinatesMeanwhile() {
+        LandMarkGrid grid = new LandMarkGrid(1);
+        PointCloud before = PointCloud.wrap(new double[]{0.5, 0.5});
+        PointCloud after = PointCloud.wrap(new double[]{10.5, 10.5});
+        grid.update("moving", before);
+        grid.add("moving", after);
+        assertTrue(grid.candidates(0, 0, 0.9, 0.9).contains("moving"));
+        assertTrue(grid.candidates(10, 10, 10.9, 10.9).contains("moving"));
+        grid.trim("moving", after);
+        assertTrue(grid.candidates(0, 0, 0.9, 0.9).isEmpty());
+        assertEquals(1, grid.getOccupiedCellCount());
+    }
+}
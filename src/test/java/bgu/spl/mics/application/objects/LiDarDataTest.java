@@ -0,0 +1,94 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiDarDataTest {
+    private static final String JSON_FILE = "example_input_2/lidar_data.json";
+
+    private static JsonArray readEntries() throws IOException {
+        try (Reader reader = Files.newBufferedReader(Paths.get(JSON_FILE), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonArray();
+        }
+    }
+
+    private static void assertSamePoints(JsonArray points, StampedCloudPoints found) {
+        assertNotNull(found);
+        PointCloud cloud = found.getPointCloud();
+        assertEquals(points.size(), cloud.size());
+        for (int i = 0; i < points.size(); i++) {
+            JsonArray point = points.get(i).getAsJsonArray();
+            assertEquals(point.get(0).getAsDouble(), cloud.getX(i));
+            assertEquals(point.get(1).getAsDouble(), cloud.getY(i));
+        }
+    }
+
+    @Test
+    void testColumnarFileMatchesJson(@TempDir Path directory) throws IOException {
+        String binaryPath = directory.resolve("lidar_data.bin").toString();
+        LiDarColumnarFormat.convert(JSON_FILE, binaryPath);
+        assertTrue(LiDarColumnarFormat.isColumnar(binaryPath));
+        assertFalse(LiDarColumnarFormat.isColumnar(JSON_FILE));
+
+        MappedLiDarData data = new MappedLiDarData(binaryPath);
+        for (JsonElement element : readEntries()) {
+            JsonObject entry = element.getAsJsonObject();
+            String id = entry.get("id").getAsString();
+            int time = entry.get("time").getAsInt();
+            JsonArray points = entry.getAsJsonArray("cloudPoints");
+            StampedCloudPoints found = data.getCloudPoints(id, time);
+            assertSamePoints(points, found);
+            assertEquals(id, found.getId());
+            assertEquals(time, found.getTimestamp());
+            for (int i = 0; i < points.size(); i++) {
+                assertEquals(points.get(i).getAsJsonArray().get(2).getAsDouble(), data.getZ(id, time, i));
+            }
+        }
+        assertNull(data.getCloudPoints("Wall_1", -1));
+        assertNull(data.getCloudPoints("No_Such_Object", 1));
+    }
+
+    @Test
+    void testJsonAndColumnarDataBasesFindTheFirstEntry(@TempDir Path directory) throws IOException {
+        String binaryPath = directory.resolve("lidar_data.bin").toString();
+        LiDarColumnarFormat.convert(JSON_FILE, binaryPath);
+        LiDarDataBase json = LiDarDataBase.loadFrom(JSON_FILE);
+        LiDarDataBase columnar = LiDarDataBase.loadFrom(binaryPath);
+        assertEquals(JSON_FILE, json.getFilePath());
+
+        Set<String> seen = new HashSet<>();
+        for (JsonElement element : readEntries()) {
+            JsonObject entry = element.getAsJsonObject();
+            String id = entry.get("id").getAsString();
+            int time = entry.get("time").getAsInt();
+            if (!seen.add(id + "@" + time)) {
+                continue; // Only the first entry of an (id, time) pair is kept
+            }
+            JsonArray points = entry.getAsJsonArray("cloudPoints");
+            for (LiDarDataBase dataBase : Arrays.asList(json, columnar)) {
+                StampedCloudPoints found = dataBase.getCloudPoints(id, time);
+                assertSamePoints(points, found);
+                assertEquals(id, found.getId());
+                assertEquals(time, found.getTimestamp());
+            }
+        }
+        assertNull(json.getCloudPoints("Wall_1", -1));
+        assertNull(json.getCloudPoints("No_Such_Object", 1));
+    }
+}
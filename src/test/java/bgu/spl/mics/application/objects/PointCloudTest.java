@@ -0,0 +1,57 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointCloudTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testTransformRotatesThenTranslates() {
+        PointCloud cloud = PointCloud.wrap(new double[]{1, 0, 0, 2});
+        PointCloud transformed = cloud.transform(new Pose(3, 4, 90, 1));
+        assertEquals(2, transformed.size());
+        assertEquals(3, transformed.getX(0), DELTA);
+        assertEquals(5, transformed.getY(0), DELTA);
+        assertEquals(1, transformed.getX(1), DELTA);
+        assertEquals(4, transformed.getY(1), DELTA);
+        assertEquals(1, cloud.getX(0), "The original cloud must not change");
+    }
+
+    @Test
+    void testAverageKeepsTheExtraPoints() {
+        PointCloud landmark = PointCloud.wrap(new double[]{0, 0, 2, 2});
+        PointCloud observation = PointCloud.wrap(new double[]{2, 4, 4, 4, 6, 6});
+        PointCloud averaged = landmark.averageWith(observation);
+        assertEquals(PointCloud.wrap(new double[]{1, 2, 3, 3, 6, 6}), averaged);
+        assertEquals(averaged, observation.averageWith(landmark));
+    }
+
+    @Test
+    void testBuilderAndListView() {
+        PointCloud built = new PointCloud.Builder(1).add(1, 2).add(3, 4).build();
+        assertEquals(PointCloud.of(Arrays.asList(new CloudPoint(1, 2), new CloudPoint(3, 4))), built);
+        assertEquals(2, built.asList().size());
+        assertEquals(3, built.asList().get(1).getX());
+        assertTrue(built.anyWithin(3, 5, 1));
+        assertFalse(built.anyInside(5, 5, 6, 6));
+    }
+
+    @Test
+    void testWrapRejectsHalfPairs() {
+        assertThrows(IllegalArgumentException.class, () -> PointCloud.wrap(new double[3]));
+    }
+
+    @Test
+    void testJsonMatchesCloudPointList() {
+        Gson gson = new Gson();
+        PointCloud cloud = PointCloud.wrap(new double[]{1.5, -2, 0, 3});
+        String json = gson.toJson(cloud);
+        assertEquals(gson.toJson(Arrays.asList(new CloudPoint(1.5, -2), new CloudPoint(0, 3))), json);
+        assertEquals(cloud, gson.fromJson(json, PointCloud.class));
+    }
+}
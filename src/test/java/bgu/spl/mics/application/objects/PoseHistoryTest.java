@@ -0,0 +1,54 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoseHistoryTest {
+    private static final double DELTA = 1e-4;
+
+    @Test
+    void testLooksUpConsecutiveAndSparseTimestamps() {
+        PoseHistory history = new PoseHistory(Arrays.asList(new Pose(2, 0, 0, 2), new Pose(1, 0, 0, 1)));
+        history.add(new Pose(3, 0, 0, 3));
+        history.add(new Pose(9, 0, 0, 9));
+        assertEquals(4, history.size());
+        assertEquals(1, history.getPose(1).getX());
+        assertEquals(3, history.getPose(3).getX());
+        assertEquals(9, history.getPose(9).getX());
+        assertNull(history.getPose(5));
+        assertNull(history.getPose(0));
+        assertEquals(9, history.getLatest().getTimestamp());
+    }
+
+    @Test
+    void testInterpolatesPositionLinearly() {
+        PoseHistory history = new PoseHistory(Arrays.asList(new Pose(0, 0, 10, 1), new Pose(4, 8, 30, 5)));
+        Pose pose = history.interpolate(2);
+        assertEquals(1, pose.getX(), DELTA);
+        assertEquals(2, pose.getY(), DELTA);
+        assertEquals(15, pose.getYaw(), DELTA);
+        assertEquals(2, pose.getTimestamp());
+        assertEquals(3.5, history.interpolate(4.5).getX(), DELTA);
+        assertEquals(4, history.interpolate(4.5).getTimestamp(), "The timestamp is rounded down");
+        assertEquals(4, history.interpolate(5).getX(), "A recorded time needs no interpolation");
+    }
+
+    @Test
+    void testInterpolatesYawAlongTheShortestArc() {
+        PoseHistory history = new PoseHistory(Arrays.asList(new Pose(0, 0, 170, 1), new Pose(0, 0, -170, 3)));
+        assertEquals(175, history.interpolate(1.5).getYaw(), DELTA);
+        assertEquals(180, Math.abs(history.interpolate(2).getYaw()), DELTA);
+        assertEquals(-175, history.interpolate(2.5).getYaw(), DELTA);
+    }
+
+    @Test
+    void testNoPoseOutsideTheRecordedRange() {
+        PoseHistory history = new PoseHistory(Arrays.asList(new Pose(0, 0, 0, 1), new Pose(1, 0, 0, 2)));
+        assertNull(history.interpolate(0.5));
+        assertNull(history.interpolate(2.5));
+        assertNull(new PoseHistory().interpolate(1));
+    }
+}
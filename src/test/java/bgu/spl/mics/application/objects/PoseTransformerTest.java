@@ -0,0 +1,84 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoseTransformerTest {
+
+    // Objects of random sizes at times 1 to 10, out of time order, plus one with a time no int can hold
+    private static List<TrackedObject> trackedObjects(Random random) {
+        List<TrackedObject> objects = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int time = 1 + random.nextInt(10);
+            PointCloud.Builder points = new PointCloud.Builder();
+            for (int p = random.nextInt(20); p >= 0; p--) {
+                points.add(random.nextDouble() * 10 - 5, random.nextDouble() * 10 - 5);
+            }
+            objects.add(new TrackedObject("Object_" + i, time, "Object", points.build()));
+        }
+        objects.add(new TrackedObject("Late", 1L << 40, "Object", PointCloud.wrap(new double[]{1, 1})));
+        return objects;
+    }
+
+    // Poses for every time but 4 and 7
+    private static Map<Integer, Pose> poses(Random random) {
+        Map<Integer, Pose> poses = new HashMap<>();
+        for (int time = 1; time <= 10; time++) {
+            if (time != 4 && time != 7) {
+                poses.put(time, new Pose(random.nextFloat() * 10, random.nextFloat() * 10, random.nextFloat() * 360 - 180, time));
+            }
+        }
+        return poses;
+    }
+
+    private static void assertTransformedOneByOne(List<TrackedObject> objects, Map<Integer, Pose> poses, PointCloud[] transformed) {
+        assertEquals(objects.size(), transformed.length);
+        for (int i = 0; i < objects.size(); i++) {
+            TrackedObject object = objects.get(i);
+            long time = object.getTimestamp();
+            Pose pose = time == (int) time ? poses.get((int) time) : null;
+            if (pose == null) {
+                assertNull(transformed[i], object.getId() + " has no pose");
+            } else {
+                assertEquals(object.getPointCloud().transform(pose), transformed[i], object.getId());
+            }
+        }
+    }
+
+    @Test
+    void testParallelTransformMatchesOneByOne() {
+        Random random = new Random(23);
+        List<TrackedObject> objects = trackedObjects(random);
+        Map<Integer, Pose> poses = poses(random);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // A threshold this small splits the batch down to single objects
+            PointCloud[] transformed = new PoseTransformer(pool, 8).transform(objects, poses::get);
+            assertTrue(pool.getPoolSize() > 0, "The batch should have been split across the pool");
+            assertTransformedOneByOne(objects, poses, transformed);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testSequentialTransformMatchesOneByOne() {
+        Random random = new Random(23);
+        List<TrackedObject> objects = trackedObjects(random);
+        Map<Integer, Pose> poses = poses(random);
+        assertTransformedOneByOne(objects, poses, new PoseTransformer(null, 1).transform(objects, poses::get));
+    }
+
+    @Test
+    void testEmptyBatch() {
+        assertEquals(0, new PoseTransformer().transform(new ArrayList<>(), time -> null).length);
+    }
+}
@@ -0,0 +1,82 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReorderBufferTest {
+
+    private static TrackedObject tracked(String id, long time) {
+        return new TrackedObject(id, time, "Object", PointCloud.wrap(new double[]{1, 1}));
+    }
+
+    private static List<String> ids(List<TrackedObject> trackedObjects) {
+        List<String> ids = new ArrayList<>();
+        for (TrackedObject trackedObject : trackedObjects) {
+            ids.add(trackedObject.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testParksUntilThePoseIsRecorded() {
+        PoseHistory poses = new PoseHistory(Collections.singletonList(new Pose(0, 0, 0, 1)));
+        ReorderBuffer buffer = new ReorderBuffer(poses, 10, 5);
+        List<TrackedObject> ready = buffer.park(Arrays.asList(tracked("a", 1), tracked("b", 3), tracked("c", 3)));
+        assertEquals(Collections.singletonList("a"), ids(ready), "An object whose pose is known is not parked");
+        assertEquals(2, buffer.size());
+
+        poses.add(new Pose(0, 0, 0, 2));
+        assertTrue(buffer.release(2).isEmpty());
+        poses.add(new Pose(0, 0, 0, 3));
+        assertEquals(Arrays.asList("b", "c"), ids(buffer.release(3)));
+        assertEquals(0, buffer.size());
+        assertEquals(2, buffer.getParkedCount());
+        assertEquals(2, buffer.getReleasedCount());
+        assertEquals(0, buffer.getExpiredCount());
+    }
+
+    @Test
+    void testExpiresObjectsWhosePoseIsTooLate() {
+        PoseHistory poses = new PoseHistory();
+        ReorderBuffer buffer = new ReorderBuffer(poses, 10, 2);
+        buffer.park(Arrays.asList(tracked("late", 1), tracked("kept", 4)));
+        poses.add(new Pose(0, 0, 0, 4));
+        assertEquals(Collections.singletonList("kept"), ids(buffer.release(4)));
+        assertEquals(1, buffer.getExpiredCount(), "The pose of tick 1 is more than 2 ticks behind tick 4");
+        assertEquals(0, buffer.size());
+
+        assertTrue(buffer.park(Collections.singletonList(tracked("too late", 1))).isEmpty());
+        assertEquals(0, buffer.size(), "An object already too late is not parked");
+        assertEquals(2, buffer.getExpiredCount());
+    }
+
+    @Test
+    void testExpiresTheOldestOverCapacity() {
+        PoseHistory poses = new PoseHistory();
+        ReorderBuffer buffer = new ReorderBuffer(poses, 2, 100);
+        buffer.park(Arrays.asList(tracked("old", 1), tracked("middle", 2), tracked("new", 3)));
+        assertEquals(2, buffer.size());
+        assertEquals(1, buffer.getExpiredCount());
+        poses.add(new Pose(0, 0, 0, 1));
+        assertTrue(buffer.release(1).isEmpty(), "The oldest object was expired");
+        poses.add(new Pose(0, 0, 0, 3));
+        assertEquals(Collections.singletonList("new"), ids(buffer.release(3)));
+    }
+
+    @Test
+    void testFusionSlamPlacesObjectsWhenTheirPoseArrives() {
+        FusionSlam slam = new FusionSlam(Collections.emptyList(), Collections.emptyList());
+        assertEquals(0, slam.processTrackedObjects(Collections.singletonList(tracked("Wall_1", 2))));
+        assertNull(slam.getLandMark("Wall_1"));
+        assertEquals(1, slam.addPose(new Pose(10, 20, 0, 2)));
+        PointCloud placed = slam.getLandMark("Wall_1").getPointCloud();
+        assertEquals(11, placed.getX(0), 1e-6);
+        assertEquals(21, placed.getY(0), 1e-6);
+    }
+}
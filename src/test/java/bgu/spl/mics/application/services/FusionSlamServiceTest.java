@@ -0,0 +1,189 @@
+package bgu.spl.mics.application.services;
+
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.application.messages.broadcasts.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.events.PoseEvent;
+import bgu.spl.mics.application.messages.events.TrackedObjectsEvent;
+import bgu.spl.mics.application.objects.CloudPoint;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FusionSlamServiceTest {
+    private static final String POSE_FILE = "example_input_2/pose_data.json";
+    private static final String LIDAR_FILE = "example_input_2/lidar_data.json";
+    private static final int SHARDS = 3;
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+
+    private static JsonArray readArray(String filePath) throws IOException {
+        try (Reader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonArray();
+        }
+    }
+
+    private static List<Pose> poses() throws IOException {
+        List<Pose> poses = new ArrayList<>();
+        for (JsonElement entry : readArray(POSE_FILE)) {
+            JsonObject pose = entry.getAsJsonObject();
+            poses.add(new Pose(pose.get("x").getAsFloat(), pose.get("y").getAsFloat(),
+                    pose.get("yaw").getAsFloat(), pose.get("time").getAsInt()));
+        }
+        return poses;
+    }
+
+    // The objects of the LiDAR file as tracked objects, by time
+    private static Map<Integer, List<TrackedObject>> trackedObjects() throws IOException {
+        Map<Integer, List<TrackedObject>> byTime = new TreeMap<>();
+        for (JsonElement entry : readArray(LIDAR_FILE)) {
+            JsonObject object = entry.getAsJsonObject();
+            List<CloudPoint> points = new ArrayList<>();
+            for (JsonElement point : object.getAsJsonArray("cloudPoints")) {
+                JsonArray coordinates = point.getAsJsonArray();
+                points.add(new CloudPoint(coordinates.get(0).getAsDouble(), coordinates.get(1).getAsDouble()));
+            }
+            String id = object.get("id").getAsString();
+            int time = object.get("time").getAsInt();
+            byTime.computeIfAbsent(time, t -> new ArrayList<>()).add(new TrackedObject(id, time, id, points));
+        }
+        return byTime;
+    }
+
+    // Landmarks both maps start with, so merging a shard has to replace them rather than add to them
+    private static List<LandMark> seed() {
+        return new ArrayList<>(Arrays.asList(
+                new LandMark("Wall_1", "Wall_1", Arrays.asList(new CloudPoint(0, 0), new CloudPoint(1, 1))),
+                new LandMark("Door_1", "Door_1", Arrays.asList(new CloudPoint(5, 5)))));
+    }
+
+    // Waits until every thread waits for its next message, so every service subscribed
+    private static void awaitIdle(List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                assertTrue(System.nanoTime() < deadline, thread.getName() + " did not start");
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static void assertSameMap(FusionSlam expected, FusionSlam actual) {
+        assertEquals(expected.getLandMarkCount(), actual.getLandMarkCount());
+        for (LandMark landMark : expected.getLandMarks()) {
+            LandMark merged = actual.getLandMark(landMark.getId());
+            assertNotNull(merged, landMark.getId());
+            assertEquals(landMark.getDescription(), merged.getDescription());
+            assertEquals(landMark.getPointCloud(), merged.getPointCloud(), landMark.getId());
+        }
+    }
+
+    @Test
+    void testShardedMapEqualsUnshardedMap() throws Exception {
+        List<Pose> poses = poses();
+        Map<Integer, List<TrackedObject>> trackedObjects = trackedObjects();
+
+        // Objects of odd times arrive before their pose and are parked until it comes
+        FusionSlam expected = new FusionSlam(seed(), new ArrayList<>());
+        int expectedAdded = 0;
+        for (Pose pose : poses) {
+            List<TrackedObject> objects = trackedObjects.get(pose.getTimestamp());
+            if (objects != null && pose.getTimestamp() % 2 == 1) {
+                expectedAdded += expected.processTrackedObjects(objects);
+            }
+            expectedAdded += expected.addPose(pose);
+            if (objects != null && pose.getTimestamp() % 2 == 0) {
+                expectedAdded += expected.processTrackedObjects(objects);
+            }
+        }
+
+        FusionSlam fusionSlam = new FusionSlam(seed(), new ArrayList<>());
+        StatisticalFolder stats = new StatisticalFolder();
+        FusionSlamService service = new FusionSlamService(fusionSlam, stats, SHARDS);
+        assertEquals(SHARDS, service.getShards().size());
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(service));
+        for (FusionSlamShardService shard : service.getShards()) {
+            threads.add(new Thread(shard));
+        }
+        threads.forEach(Thread::start);
+        List<Future<List<TrackedObject>>> placed = new ArrayList<>();
+        try {
+            awaitIdle(threads);
+            for (Pose pose : poses) {
+                List<TrackedObject> objects = trackedObjects.get(pose.getTimestamp());
+                if (objects != null && pose.getTimestamp() % 2 == 1) {
+                    placed.add(bus.sendEvent(new TrackedObjectsEvent(objects)));
+                }
+                assertNotNull(bus.sendEvent(new PoseEvent<Void>("robot", pose)));
+                if (objects != null && pose.getTimestamp() % 2 == 0) {
+                    placed.add(bus.sendEvent(new TrackedObjectsEvent(objects)));
+                }
+            }
+            // Every event is completed only once the shards handled their part of it
+            for (Future<List<TrackedObject>> future : placed) {
+                assertNotNull(future);
+                assertNotNull(future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            bus.sendBroadcast(new TerminatedBroadcast("test"));
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        }
+        for (Thread thread : threads) {
+            assertFalse(thread.isAlive(), thread.getName() + " did not terminate");
+        }
+
+        // Each landmark was built by exactly one shard, and merging them gives the unsharded map
+        Set<String> seen = new HashSet<>();
+        for (FusionSlamShardService shard : service.getShards()) {
+            for (LandMark landMark : shard.getShard().getLandMarks()) {
+                assertTrue(seen.add(landMark.getId()), landMark.getId() + " is in two shards");
+            }
+        }
+        assertEquals(expected.getLandMarkCount(), seen.size());
+        assertSameMap(expected, fusionSlam);
+        assertEquals(expectedAdded, stats.getNumLandmarks());
+    }
+
+    @Test
+    void testMergeReplacesLandMarks() {
+        FusionSlam global = new FusionSlam(seed(), new ArrayList<>());
+        List<LandMark> refined = Arrays.asList(
+                new LandMark("Wall_1", "Wall_1", Arrays.asList(new CloudPoint(2, 2), new CloudPoint(3, 3))),
+                new LandMark("Bin", "Bin", Arrays.asList(new CloudPoint(7, 7))));
+        FusionSlam shard = new FusionSlam(refined, new ArrayList<>());
+
+        assertEquals(1, global.merge(shard), "Only Bin is new");
+        assertEquals(shard.getLandMark("Wall_1").getPointCloud(), global.getLandMark("Wall_1").getPointCloud());
+        assertEquals(shard.getLandMark("Bin").getPointCloud(), global.getLandMark("Bin").getPointCloud());
+        assertEquals(seed().get(1).getPointCloud(), global.getLandMark("Door_1").getPointCloud());
+        // The grid moved the replaced landmark along
+        assertTrue(global.getLandMarksWithin(0, 0, 0.5).isEmpty());
+        assertEquals(1, global.getLandMarksWithin(2, 2, 0.5).size());
+    }
+}